@@ -12,6 +12,9 @@ package de.wintermute.sudoku;
 /**
  * Abortable Task is used for supporting Thread Control of spawned threads.
  * 
+ * The solvers of the task don't ask the task, but its
+ * {@link CancellationToken}, which is cancelled on abort.
+ * 
  * @author Ivonne Engemann
  * @version $Id: AbortableTask.java,v 1.4 2006/01/08 13:27:51 marcus Exp $
  * 
@@ -21,7 +24,12 @@ public abstract class AbortableTask {
 	/**
 	 * Flag to check if Task was aborted
 	 */
-	private boolean running = false;
+	private volatile boolean running = false;
+
+	/**
+	 * The token to stop the solvers of this task.
+	 */
+	private final CancellationToken token = new CancellationToken();
 
 	/**
 	 * Mark aborted.
@@ -33,6 +41,7 @@ public abstract class AbortableTask {
 			return false;
 
 		running = false;
+		token.cancel();
 		return true;
 	}
 
@@ -45,15 +54,24 @@ public abstract class AbortableTask {
 		if (running)
 			return false;
 
+		token.reset();
 		running = true;
 		return true;
 	}
 
 	/**
-	 * Check running flag.
-	 * @return true if Task is running.
+	 * Check running flag. Not synchronized, it's only a volatile read.
+	 * @return true if Task is running and its budgets aren't used up.
+	 */
+	protected boolean isRunning() {
+		return running && !token.isCancelled();
+	}
+
+	/**
+	 * Get the token to stop the solvers of this task.
+	 * @return the token
 	 */
-	synchronized protected boolean isRunning() {
-		return running;
+	public CancellationToken getToken() {
+		return token;
 	}
 }
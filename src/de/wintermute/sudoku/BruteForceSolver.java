@@ -21,8 +21,15 @@ import java.util.Vector;
  */
 public class BruteForceSolver extends Solver {
 
-	/** Max Number of Search runs */
-	private int maxNumberOfSolutionsToSearch;
+	/**
+	 * The empty positions set so far, in the order of the search.
+	 */
+	private final byte[] stackPos = new byte[CandidateBoard.CELLS];
+
+	/**
+	 * The digits not yet tried for each set position.
+	 */
+	private final int[] stackFree = new int[CandidateBoard.CELLS];
 
 	/**
 	 * Create a new solver with the task to abort.
@@ -33,8 +40,7 @@ public class BruteForceSolver extends Solver {
 	 *            indicates the solver to stop when one solution was found
 	 */
 	protected BruteForceSolver(final AbortableTask solverTask, boolean findFirst) {
-		super(solverTask);
-		maxNumberOfSolutionsToSearch = findFirst ? 1 : 2;
+		super(solverTask, findFirst ? 1 : 2);
 	}
 
 	/**
@@ -58,116 +64,104 @@ public class BruteForceSolver extends Solver {
 	private final Vector findSolutions(final Grid newGrid) {
 
 		// important: store a copy !
-		// because we manipulating pencil marks and shown digits
+		// because we manipulating shown digits
 		this.grid = newGrid.clone();
-		possibleSolutions.removeAllElements();
+		resetSolutions();
 
 		// initialize all possible digits for each position
-		grid.setupPossibleDigits();
-
-		// store the empty position for later compare of solutions
-		Vector emptyPositions = grid.allEmptyPositions();
-		emptyPositionsForCompare = new Position[emptyPositions.size()];
-		emptyPositions.copyInto(emptyPositionsForCompare);
+		if (!board.load(grid)) {
+			// givens in conflict => no solution at all
+			return finishSearch();
+		}
 
-		// start recursion with position 0
-		checkSolution((short) 0);
+		// start with position 0
+		startSearchPhase();
+		checkSolutions();
 
-		return possibleSolutions;
+		return finishSearch();
 	}
 
 	/**
-	 * Recursion call: check each position with all possible digits in a
-	 * back-tracking algorithmen.
+	 * Check each position with all possible digits in a back-tracking
+	 * algorithmen.
 	 * 
-	 * @param pos
-	 *            the position to examine
+	 * The search is iterative: the empty positions set so far and their
+	 * digits not yet tried are kept on preallocated stacks, given positions
+	 * are just skipped.
 	 */
-	private void checkSolution(final short pos) {
+	private void checkSolutions() {
 
-		if (task != null && !task.isRunning()) {
-			// abort
-			return;
-		}
+		int level = 0;
+		int pos = 0;
+		boolean descend = true;
 
-		if (possibleSolutions.size() >= maxNumberOfSolutionsToSearch) {
-			// stop search
-			return;
-		}
+		while (true) {
 
-		if (pos >= 81) {
+			if (descend) {
+				descend = false;
 
-			// all slots filled => check the solution
-			addSolution(grid, (short) 0);
+				if (token != null && !token.visitNode()) {
+					// aborted or budget used up
+					break;
+				}
+				statistics.visitNode(level);
 
-			// back
-			return;
-		}
+				if (isSolutionLimitReached()) {
+					// stop search
+					break;
+				}
+
+				// skip the given positions
+				while (pos < CandidateBoard.CELLS && board.getDigit(pos) != 0) {
+					pos++;
+				}
 
-		// calculate the row and column from the postion
-		final byte row = (byte) (pos / 9);
-		final byte col = (byte) (pos % 9);
-		final GridSlot slot = grid.getSlot(row, col);
-
-		if (slot.isOriginalDigit()) {
-			checkSolution((short) (pos + 1));
-
-		} else {
-
-			for (byte d = 1; d <= 9; d++) {
-				// check if digit is possible from prechecked array and from
-				// current state of solving
-				if (grid.getSlot(row, col).isPencilMark(d - 1)
-						&& possible(row, col, d)) {
-					// digit possible => set to current grid
-					slot.setShown(d);
-					// go on with next position => recursion
-					checkSolution((short) (pos + 1));
+				if (pos >= CandidateBoard.CELLS) {
+					// all slots filled => check the solution
+					addSolution(board.digits, (short) 0);
+				} else {
+					// digits not yet used in row, column and block
+					stackPos[level] = (byte) pos;
+					stackFree[level] = board.getFreeDigits(pos);
+					level++;
 				}
 			}
-		}
-	}
 
-	/**
-	 * Check if digit is possible for this slot in the current solving state.
-	 * Check if the same digit already occurs in a row above in the same column
-	 * or in a column left of the current slot in the same row. Checking blocks,
-	 * too.
-	 * 
-	 * @param row
-	 *            the Row
-	 * @param col
-	 *            The Column
-	 * @param d
-	 *            the digit to check
-	 * @return true if digit is matching
-	 */
-	private boolean possible(final byte row, final byte col, final byte d) {
+			if (level == 0) {
+				// all digits tried
+				break;
+			}
 
-		for (byte r = 0; r < row; r++) {
-			if (grid.getSlot(r, col).getShown() == d) {
-				return false;
+			// take back the digit of the last position
+			final int top = level - 1;
+			final int cell = stackPos[top];
+			if (board.getDigit(cell) != 0) {
+				board.unset(cell);
 			}
-		}
 
-		for (byte c = 0; c < col; c++) {
-			if (grid.getSlot(row, c).getShown() == d) {
-				return false;
+			final int free = stackFree[top];
+			if (free == 0) {
+				// back to the position before
+				level--;
+				statistics.backtracks++;
+				continue;
 			}
+			stackFree[top] = free & (free - 1);
+
+			// digit possible => set to current board and go on with next
+			// position
+			board.set(cell, CandidateBoard.lowestDigit(free));
+			statistics.guesses++;
+			pos = cell + 1;
+			descend = true;
 		}
 
-		final byte blockStartRow = (byte) (((int) (row / 3)) * 3);
-		final byte blockStartCol = (byte) (((int) (col / 3)) * 3);
-		for (byte r = blockStartRow; r < blockStartRow + 3; r++) {
-			for (byte c = blockStartCol; c < blockStartCol + 3; c++) {
-				if (r == row && c == col) {
-					return true;
-				}
-				if (grid.getSlot(r, c).getShown() == d) {
-					return false;
-				}
+		// stopped early: take back the digits set so far
+		while (level > 0) {
+			level--;
+			if (board.getDigit(stackPos[level]) != 0) {
+				board.unset(stackPos[level]);
 			}
 		}
-		return true;
 	}
 }
@@ -0,0 +1,191 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Cooperative cancellation of a search without locking.
+ *
+ * The token is cancelled by another thread (see {@link AbortableTask#abort()})
+ * or by itself, when its node budget or its deadline is used up. The searching
+ * thread calls {@link #visitNode()} at every node: a volatile read and a
+ * counter, the clock is read only every {@link #CLOCK_INTERVAL} nodes.
+ *
+ * The node counter isn't synchronized, so only one thread may call
+ * {@link #visitNode()}. Threads sharing a search and its budgets use a child
+ * token each (see {@link #CancellationToken(CancellationToken)}): it counts
+ * its own nodes and adds them to the shared token every
+ * {@link #CLOCK_INTERVAL} nodes, which takes a lock only then. The shared node
+ * budget may be exceeded by up to {@link #CLOCK_INTERVAL} nodes per thread.
+ *
+ * @version $Id$
+ */
+public class CancellationToken {
+
+	/** Number of nodes between two reads of the clock (power of 2). */
+	public static final int CLOCK_INTERVAL = 256;
+
+	/** Set when the search has to stop. */
+	private volatile boolean cancelled = false;
+
+	/** Nodes visited since the last reset. */
+	private long nodes = 0;
+
+	/** Maximum number of nodes, 0 for no budget. */
+	private volatile long nodeBudget = 0;
+
+	/** Time (System.currentTimeMillis()) to stop at, 0 for no deadline. */
+	private volatile long deadline = 0;
+
+	/** The shared token of a child token, null if this one is shared. */
+	private final CancellationToken parent;
+
+	/** Nodes of a child token not yet added to the shared token. */
+	private int unreported = 0;
+
+	/**
+	 * Create a token for a search of one thread.
+	 */
+	public CancellationToken() {
+		this.parent = null;
+	}
+
+	/**
+	 * Create a child token for one of several threads sharing a search. It
+	 * stops when the shared token is cancelled, its budgets apply to the nodes
+	 * of all threads.
+	 *
+	 * @param shared
+	 *            the token of the whole search
+	 */
+	public CancellationToken(final CancellationToken shared) {
+		this.parent = shared;
+	}
+
+	/**
+	 * Cancel the search.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Check if the search was cancelled or a budget is used up, without
+	 * counting a node.
+	 *
+	 * @return true if the search has to stop
+	 */
+	public boolean isCancelled() {
+		return cancelled || (parent != null && parent.cancelled);
+	}
+
+	/**
+	 * Prepare the token for a new search: not cancelled and no nodes visited.
+	 * The budgets are kept.
+	 */
+	public void reset() {
+		nodes = 0;
+		unreported = 0;
+		cancelled = false;
+	}
+
+	/**
+	 * Set the maximum number of nodes to visit.
+	 *
+	 * @param budget
+	 *            the number of nodes, 0 for no budget
+	 */
+	public void setNodeBudget(final long budget) {
+		this.nodeBudget = budget;
+	}
+
+	/**
+	 * Set the time to stop at.
+	 *
+	 * @param time
+	 *            the time as of System.currentTimeMillis(), 0 for no deadline
+	 */
+	public void setDeadline(final long time) {
+		this.deadline = time;
+	}
+
+	/**
+	 * Add the nodes of a child token and check if the search may go on.
+	 *
+	 * @param count
+	 *            the number of nodes
+	 * @return false if the search has to stop
+	 */
+	private synchronized boolean addNodes(final int count) {
+
+		nodes += count;
+		if (nodeBudget > 0 && nodes > nodeBudget) {
+			cancelled = true;
+		} else if (deadline > 0 && System.currentTimeMillis() > deadline) {
+			cancelled = true;
+		}
+		return !cancelled;
+	}
+
+	/**
+	 * Add the nodes of this child token not added yet to the shared token,
+	 * e.g. when its thread is done.
+	 */
+	public void flush() {
+
+		if (parent != null && unreported > 0) {
+			parent.addNodes(unreported);
+			unreported = 0;
+		}
+	}
+
+	/**
+	 * Get the number of nodes visited since the last reset.
+	 *
+	 * @return the nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Count a node of the search and check if the search may go on.
+	 *
+	 * @return false if the search has to stop
+	 */
+	public boolean visitNode() {
+
+		if (cancelled) {
+			return false;
+		}
+
+		nodes++;
+		if (parent != null) {
+			// the shared token checks the budgets of all threads
+			if (parent.cancelled) {
+				return false;
+			}
+			if (++unreported == CLOCK_INTERVAL) {
+				unreported = 0;
+				return parent.addNodes(CLOCK_INTERVAL);
+			}
+			return true;
+		}
+		if (nodeBudget > 0 && nodes > nodeBudget) {
+			cancelled = true;
+			return false;
+		}
+		if (deadline > 0 && (nodes & (CLOCK_INTERVAL - 1)) == 0
+				&& System.currentTimeMillis() > deadline) {
+			cancelled = true;
+			return false;
+		}
+		return true;
+	}
+}
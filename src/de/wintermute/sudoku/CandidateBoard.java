@@ -0,0 +1,620 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Compact solving state of a grid: the candidates of all 81 cells as a flat
+ * int[] of bit masks (bit 0 = digit 1 ... bit 8 = digit 9) and the digits
+ * already used in every row, column and block.
+ *
+ * Placing a digit and eliminating candidates are plain bit operations, so the
+ * solvers don't need to walk the GridSlot objects of a Grid during search.
+ * 
+ * Every change done by place() and eliminate() is recorded on a trail, so a
+ * search can go back to an earlier state with undo() instead of copying the
+ * board before each guess.
+ *
+ * The changes also fill a worklist: the cells left with one candidate or none
+ * and the units whose candidates changed. propagateSingles() only looks at
+ * these instead of sweeping the whole board again and again.
+ *
+ * @version $Id$
+ */
+public class CandidateBoard {
+
+	/** Mask with all 9 digits set. */
+	public static final int ALL_DIGITS = 0x1FF;
+
+	/** Number of cells. */
+	public static final int CELLS = 81;
+
+	/**
+	 * Maximum size of the trail: every candidate of every cell can be removed
+	 * once, and every cell can be filled once.
+	 */
+	private static final int TRAIL_SIZE = CELLS * 9 + CELLS;
+
+	/** Number of set bits for every 9 bit mask. */
+	private static final byte[] BIT_COUNT = new byte[ALL_DIGITS + 1];
+
+	/** Digit (1..9) of the lowest set bit for every 9 bit mask. */
+	private static final byte[] LOWEST_DIGIT = new byte[ALL_DIGITS + 1];
+
+	/** Row of every cell. */
+	static final byte[] ROW = new byte[CELLS];
+
+	/** Column of every cell. */
+	static final byte[] COL = new byte[CELLS];
+
+	/** Block of every cell. */
+	static final byte[] BOX = new byte[CELLS];
+
+	/** The 20 cells sharing a row, column or block with every cell. */
+	static final byte[][] PEERS = new byte[CELLS][20];
+
+	/** The cells of the 27 units: rows 0..8, columns 9..17, blocks 18..26. */
+	static final byte[][] UNITS = new byte[27][9];
+
+	/** The 3 units (row, column, block) of every cell. */
+	static final byte[][] UNITS_OF_CELL = new byte[CELLS][3];
+
+	/** The 3 units of every cell as bits of a 27 bit mask. */
+	private static final int[] UNIT_BITS = new int[CELLS];
+
+	/** All 9 bit masks with the given number of set bits (index 0..9). */
+	static final int[][] SUBSETS = new int[10][];
+
+	static {
+		for (int mask = 1; mask <= ALL_DIGITS; mask++) {
+			BIT_COUNT[mask] = (byte) (BIT_COUNT[mask >> 1] + (mask & 1));
+			LOWEST_DIGIT[mask] = (mask & 1) != 0 ? 1
+					: (byte) (LOWEST_DIGIT[mask >> 1] + 1);
+		}
+
+		final int[] subsetCount = new int[10];
+		for (int mask = 0; mask <= ALL_DIGITS; mask++) {
+			subsetCount[BIT_COUNT[mask]]++;
+		}
+		for (int size = 0; size < 10; size++) {
+			SUBSETS[size] = new int[subsetCount[size]];
+			subsetCount[size] = 0;
+		}
+		for (int mask = 0; mask <= ALL_DIGITS; mask++) {
+			SUBSETS[BIT_COUNT[mask]][subsetCount[BIT_COUNT[mask]]++] = mask;
+		}
+
+		for (int cell = 0; cell < CELLS; cell++) {
+			ROW[cell] = (byte) (cell / 9);
+			COL[cell] = (byte) (cell % 9);
+			BOX[cell] = Position.getBlockNumber(ROW[cell], COL[cell]);
+		}
+
+		final int[] unitSize = new int[27];
+		for (int cell = 0; cell < CELLS; cell++) {
+			UNITS[ROW[cell]][unitSize[ROW[cell]]++] = (byte) cell;
+			UNITS[9 + COL[cell]][unitSize[9 + COL[cell]]++] = (byte) cell;
+			UNITS[18 + BOX[cell]][unitSize[18 + BOX[cell]]++] = (byte) cell;
+
+			UNITS_OF_CELL[cell][0] = ROW[cell];
+			UNITS_OF_CELL[cell][1] = (byte) (9 + COL[cell]);
+			UNITS_OF_CELL[cell][2] = (byte) (18 + BOX[cell]);
+			UNIT_BITS[cell] = (1 << ROW[cell]) | (1 << (9 + COL[cell]))
+					| (1 << (18 + BOX[cell]));
+		}
+
+		for (int cell = 0; cell < CELLS; cell++) {
+			int n = 0;
+			for (int other = 0; other < CELLS; other++) {
+				if (other != cell
+						&& (ROW[other] == ROW[cell] || COL[other] == COL[cell] || BOX[other] == BOX[cell])) {
+					PEERS[cell][n++] = (byte) other;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The candidates of every cell. A filled cell has no candidates left.
+	 */
+	final int[] candidates = new int[CELLS];
+
+	/**
+	 * The digit of every cell (0 = empty).
+	 */
+	final byte[] digits = new byte[CELLS];
+
+	/** Digits used in every row. */
+	final int[] rowUsed = new int[9];
+
+	/** Digits used in every column. */
+	final int[] colUsed = new int[9];
+
+	/** Digits used in every block. */
+	final int[] boxUsed = new int[9];
+
+	/** Number of still empty cells. */
+	int emptyCount;
+
+	/**
+	 * The changed cells in order of change. A placed digit is stored as ~cell.
+	 */
+	private final byte[] trailCell = new byte[TRAIL_SIZE];
+
+	/**
+	 * The candidates of the changed cells before the change.
+	 */
+	private final int[] trailMask = new int[TRAIL_SIZE];
+
+	/** Number of entries on the trail. */
+	private int trailSize;
+
+	/** Cells left with one candidate or none, to check for naked singles. */
+	private final byte[] pendingCells = new byte[CELLS];
+
+	/** Marks the cells in {@link #pendingCells}. */
+	private final boolean[] pending = new boolean[CELLS];
+
+	/** Number of entries in {@link #pendingCells}. */
+	private int pendingCount;
+
+	/** Units with changed candidates (bit per unit), to check for hidden singles. */
+	private int pendingUnits;
+
+	/** Naked singles placed so far (never reset, for statistics). */
+	long nakedSingles;
+
+	/** Hidden singles placed so far (never reset, for statistics). */
+	long hiddenSingles;
+
+	/**
+	 * Count the digits in a candidate mask.
+	 *
+	 * @param mask
+	 *            the 9 bit candidate mask
+	 * @return number of candidates
+	 */
+	public static int count(final int mask) {
+		return BIT_COUNT[mask];
+	}
+
+	/**
+	 * Get the lowest digit of a candidate mask.
+	 *
+	 * @param mask
+	 *            the 9 bit candidate mask
+	 * @return the digit (1..9) or 0 if the mask is empty
+	 */
+	public static byte lowestDigit(final int mask) {
+		return LOWEST_DIGIT[mask];
+	}
+
+	/**
+	 * Check if two different cells share a row, column or block.
+	 *
+	 * @param cell
+	 *            the first cell (0..80)
+	 * @param other
+	 *            the second cell (0..80)
+	 * @return true if the cells see each other
+	 */
+	static boolean isPeer(final int cell, final int other) {
+
+		return cell != other
+				&& (ROW[cell] == ROW[other] || COL[cell] == COL[other] || BOX[cell] == BOX[other]);
+	}
+
+	/**
+	 * Clear the board: every cell empty, every digit possible.
+	 */
+	public void clear() {
+
+		for (int cell = 0; cell < CELLS; cell++) {
+			candidates[cell] = ALL_DIGITS;
+			digits[cell] = 0;
+		}
+		for (int i = 0; i < 9; i++) {
+			rowUsed[i] = 0;
+			colUsed[i] = 0;
+			boxUsed[i] = 0;
+		}
+		emptyCount = CELLS;
+		trailSize = 0;
+		clearPending();
+	}
+
+	/**
+	 * Load the given (original) digits of the grid. All other cells are empty.
+	 *
+	 * @param grid
+	 *            the grid to read
+	 * @return false if two givens are in conflict
+	 */
+	public boolean load(final Grid grid) {
+
+		clear();
+		boolean valid = true;
+		for (int cell = 0; cell < CELLS; cell++) {
+			final GridSlot slot = grid.getSlot(ROW[cell], COL[cell]);
+			if (slot.isOriginalDigit() && slot.getShown() > 0) {
+				final byte digit = slot.getShown();
+				if (!isPossible(cell, digit)) {
+					valid = false;
+				}
+				place(cell, digit);
+			}
+		}
+		// the givens are never taken back
+		trailSize = 0;
+		return valid;
+	}
+
+	/**
+	 * Copy the complete state of another board into this one.
+	 *
+	 * @param other
+	 *            the board to copy
+	 */
+	public void copyFrom(final CandidateBoard other) {
+
+		System.arraycopy(other.candidates, 0, candidates, 0, CELLS);
+		System.arraycopy(other.digits, 0, digits, 0, CELLS);
+		System.arraycopy(other.rowUsed, 0, rowUsed, 0, 9);
+		System.arraycopy(other.colUsed, 0, colUsed, 0, 9);
+		System.arraycopy(other.boxUsed, 0, boxUsed, 0, 9);
+		emptyCount = other.emptyCount;
+		trailSize = 0;
+
+		System.arraycopy(other.pendingCells, 0, pendingCells, 0, CELLS);
+		System.arraycopy(other.pending, 0, pending, 0, CELLS);
+		pendingCount = other.pendingCount;
+		pendingUnits = other.pendingUnits;
+	}
+
+	/**
+	 * Check if the digit is not yet used in the row, column and block of the
+	 * cell.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @param digit
+	 *            the digit (1..9)
+	 * @return true if the digit may be placed
+	 */
+	public boolean isPossible(final int cell, final int digit) {
+
+		return ((rowUsed[ROW[cell]] | colUsed[COL[cell]] | boxUsed[BOX[cell]]) & (1 << (digit - 1))) == 0;
+	}
+
+	/**
+	 * Get the digits still free for the cell regarding the used masks only.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @return the mask of free digits
+	 */
+	public int getFreeDigits(final int cell) {
+
+		return ALL_DIGITS
+				& ~(rowUsed[ROW[cell]] | colUsed[COL[cell]] | boxUsed[BOX[cell]]);
+	}
+
+	/**
+	 * Place a digit and eliminate it from the candidates of all peers.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @param digit
+	 *            the digit (1..9)
+	 */
+	public void place(final int cell, final int digit) {
+
+		final int bit = 1 << (digit - 1);
+
+		// record the placement and the old candidates of the cell
+		trailCell[trailSize] = (byte) ~cell;
+		trailMask[trailSize++] = candidates[cell];
+
+		digits[cell] = (byte) digit;
+		candidates[cell] = 0;
+		rowUsed[ROW[cell]] |= bit;
+		colUsed[COL[cell]] |= bit;
+		boxUsed[BOX[cell]] |= bit;
+		emptyCount--;
+		// the other candidates of the cell are gone from its units
+		pendingUnits |= UNIT_BITS[cell];
+
+		final byte[] peers = PEERS[cell];
+		for (int i = 0; i < peers.length; i++) {
+			eliminate(peers[i], bit);
+		}
+	}
+
+	/**
+	 * Remove candidates from a cell.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @param mask
+	 *            the candidates to remove
+	 * @return true if at least one candidate was removed
+	 */
+	public boolean eliminate(final int cell, final int mask) {
+
+		final int old = candidates[cell];
+		if ((old & mask) == 0) {
+			return false;
+		}
+		trailCell[trailSize] = (byte) cell;
+		trailMask[trailSize++] = old;
+		final int left = old & ~mask;
+		candidates[cell] = left;
+
+		pendingUnits |= UNIT_BITS[cell];
+		if ((left & (left - 1)) == 0 && !pending[cell]) {
+			// naked single or no candidate left
+			pending[cell] = true;
+			pendingCells[pendingCount++] = (byte) cell;
+		}
+		return true;
+	}
+
+	/**
+	 * Place the naked and hidden singles of the pending cells and units, and
+	 * of everything changed by these placements, until nothing is pending.
+	 *
+	 * @return false if a cell has no candidate left or a digit has no place
+	 *         left in a unit
+	 */
+	public boolean propagateSingles() {
+
+		while (pendingCount > 0 || pendingUnits != 0) {
+
+			// naked singles
+			while (pendingCount > 0) {
+				final int cell = pendingCells[--pendingCount];
+				pending[cell] = false;
+				if (digits[cell] != 0) {
+					continue;
+				}
+				final int mask = candidates[cell];
+				if (mask == 0) {
+					clearPending();
+					return false;
+				}
+				if ((mask & (mask - 1)) == 0) {
+					place(cell, LOWEST_DIGIT[mask]);
+					nakedSingles++;
+				}
+			}
+
+			// hidden singles of one changed unit
+			if (pendingUnits != 0) {
+				final int unitBit = pendingUnits & -pendingUnits;
+				pendingUnits &= ~unitBit;
+				if (placeHiddenSingles(lowestUnit(unitBit)) < 0) {
+					clearPending();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find all hidden singles of a unit at once: the candidates of its cells
+	 * are folded into the digits seen at least once and more than once, the
+	 * hidden singles are the digits seen exactly once.
+	 *
+	 * @param unit
+	 *            the unit (0..26)
+	 * @return the mask of digits with exactly one cell left in the unit, or -1
+	 *         if a digit neither is placed nor has a cell left
+	 */
+	int findHiddenSingles(final int unit) {
+
+		final byte[] cells = UNITS[unit];
+
+		int once = 0;
+		int twice = 0;
+		for (int i = 0; i < 9; i++) {
+			final int mask = candidates[cells[i]];
+			twice |= once & mask;
+			once |= mask;
+		}
+
+		final int used = unit < 9 ? rowUsed[unit] : unit < 18 ? colUsed[unit - 9]
+				: boxUsed[unit - 18];
+		if ((once | used) != ALL_DIGITS) {
+			return -1;
+		}
+		return once & ~twice;
+	}
+
+	/**
+	 * Place the hidden singles of a unit.
+	 *
+	 * @param unit
+	 *            the unit (0..26)
+	 * @return number of placed digits or -1 if a digit has no place left in
+	 *         the unit
+	 */
+	int placeHiddenSingles(final int unit) {
+
+		int singles = findHiddenSingles(unit);
+		if (singles <= 0) {
+			return singles;
+		}
+
+		final byte[] cells = UNITS[unit];
+		int placed = 0;
+		while (singles != 0) {
+			final int bit = singles & -singles;
+			singles &= singles - 1;
+			for (int i = 0; i < 9; i++) {
+				final int cell = cells[i];
+				if ((candidates[cell] & bit) != 0) {
+					if (candidates[cell] != bit) {
+						// the cell is the single place of another digit too
+						if ((candidates[cell] & singles) != 0) {
+							return -1;
+						}
+					}
+					place(cell, LOWEST_DIGIT[bit]);
+					placed++;
+					hiddenSingles++;
+					break;
+				}
+			}
+		}
+		return placed;
+	}
+
+	/**
+	 * Get the unit of a single unit bit.
+	 *
+	 * @param unitBit
+	 *            a mask with exactly one of the 27 unit bits set
+	 * @return the unit (0..26)
+	 */
+	private static int lowestUnit(final int unitBit) {
+
+		int unit = 0;
+		if ((unitBit & 0x1FF) == 0) {
+			unit = (unitBit & 0x3FE00) == 0 ? 18 : 9;
+		}
+		return unit + LOWEST_DIGIT[(unitBit >> unit) & ALL_DIGITS] - 1;
+	}
+
+	/**
+	 * Forget the pending cells and units, e.g. after a contradiction.
+	 */
+	private void clearPending() {
+
+		while (pendingCount > 0) {
+			pending[pendingCells[--pendingCount]] = false;
+		}
+		pendingUnits = 0;
+	}
+
+	/**
+	 * Get the current position on the trail to return to later.
+	 *
+	 * @return the trail mark
+	 */
+	public int mark() {
+		return trailSize;
+	}
+
+	/**
+	 * Take back all changes done since the mark was taken.
+	 *
+	 * @param mark
+	 *            the trail mark from {@link #mark()}
+	 */
+	public void undo(final int mark) {
+
+		while (trailSize > mark) {
+			trailSize--;
+			final int cell = trailCell[trailSize];
+			if (cell < 0) {
+				// placed digit
+				final int placed = ~cell;
+				final int bit = ~(1 << (digits[placed] - 1));
+				digits[placed] = 0;
+				rowUsed[ROW[placed]] &= bit;
+				colUsed[COL[placed]] &= bit;
+				boxUsed[BOX[placed]] &= bit;
+				emptyCount++;
+				candidates[placed] = trailMask[trailSize];
+			} else {
+				candidates[cell] = trailMask[trailSize];
+			}
+		}
+	}
+
+	/**
+	 * Set a digit without touching the candidates of the peers. Only the used
+	 * masks are maintained, which is all a plain back-tracking search needs.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @param digit
+	 *            the digit (1..9)
+	 */
+	public void set(final int cell, final int digit) {
+
+		final int bit = 1 << (digit - 1);
+		digits[cell] = (byte) digit;
+		rowUsed[ROW[cell]] |= bit;
+		colUsed[COL[cell]] |= bit;
+		boxUsed[BOX[cell]] |= bit;
+		emptyCount--;
+	}
+
+	/**
+	 * Undo {@link #set(int, int)}.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 */
+	public void unset(final int cell) {
+
+		final int bit = ~(1 << (digits[cell] - 1));
+		digits[cell] = 0;
+		rowUsed[ROW[cell]] &= bit;
+		colUsed[COL[cell]] &= bit;
+		boxUsed[BOX[cell]] &= bit;
+		emptyCount++;
+	}
+
+	/**
+	 * Get the candidates of a cell.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @return the candidate mask
+	 */
+	public int getCandidates(final int cell) {
+		return candidates[cell];
+	}
+
+	/**
+	 * Get the digit of a cell.
+	 *
+	 * @param cell
+	 *            the cell (0..80)
+	 * @return the digit or 0 if empty
+	 */
+	public byte getDigit(final int cell) {
+		return digits[cell];
+	}
+
+	/**
+	 * Get the number of empty cells.
+	 *
+	 * @return number of empty cells
+	 */
+	public int getEmptyCount() {
+		return emptyCount;
+	}
+
+	/**
+	 * Show all digits of the board in the grid.
+	 *
+	 * @param grid
+	 *            the grid to fill
+	 */
+	public void copyDigitsTo(final Grid grid) {
+
+		for (int cell = 0; cell < CELLS; cell++) {
+			grid.getSlot(ROW[cell], COL[cell]).setShown(digits[cell]);
+		}
+	}
+}
@@ -9,10 +9,27 @@
  ******************************************************************************/
 package de.wintermute.sudoku;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import de.wintermute.sudoku.res.Dict;
 
 /**
- * The CreatorTask uses a Thread to create a new unique puzzle.
+ * The CreatorTask uses Threads to create a new unique puzzle.
+ * 
+ * Several workers create puzzles at the same time, each with its own
+ * GridCreator, rater and solver. Every unique puzzle is offered to the task,
+ * which keeps the best one so far. So on a multi core host more puzzles are
+ * compared within the same time.
+ * 
+ * For the {@link PuzzlePool} the task runs with low priority and without
+ * progress messages, and delivers the game to the pool.
+ * 
+ * A running creation can be suspended to a checkpoint with the best game
+ * found so far and its progress, and be resumed from it later.
  * 
  * @author Ivonne Engemann
  * @version $Id: CreatorTask.java,v 1.15 2006/02/12 15:38:31 marcus Exp $
@@ -40,19 +57,65 @@ public class CreatorTask extends AbortableTask {
 	private short given;
 
 	/**
-	 * The back-tracking depth of the 'best' game.
+	 * The difficulty rating of the 'best' game.
 	 */
-	private short bestBacktracking;
+	private int bestRating;
 
 	/**
-	 * The single count of the 'best' game.
+	 * The number of givens of the 'best' game.
 	 */
-	private short bestSingles;
+	private short bestGiven;
 
 	/**
-	 * The number of givens of the 'best' game.
+	 * The index of the level of the game.
 	 */
-	private short bestGiven;
+	private short level;
+
+	/**
+	 * Number of generated grids so far.
+	 */
+	private int numberOfGeneratedGrids;
+
+	/**
+	 * Number of unique grids found so far.
+	 */
+	private int numberOfFoundGrids;
+
+	/**
+	 * Time spent before the current run in ms (when resumed).
+	 */
+	private long usedTime;
+
+	/**
+	 * Start time of the current run.
+	 */
+	private long startTime;
+
+	/**
+	 * Number of unique grids to compare before the best one is taken.
+	 */
+	private int maxIterations;
+
+	/**
+	 * Time to deliver the best game found, even if more grids should be
+	 * compared.
+	 */
+	private long endTime;
+
+	/**
+	 * Number of threads creating grids.
+	 */
+	private int numberOfWorkers = 1;
+
+	/**
+	 * The pool to deliver the game to, null to deliver it to the midlet.
+	 */
+	private PuzzlePool pool = null;
+
+	/**
+	 * Priority of the threads creating grids.
+	 */
+	private int priority = Thread.NORM_PRIORITY;
 
 	/**
 	 * Level IDs used for creating grids.
@@ -83,44 +146,175 @@ public class CreatorTask extends AbortableTask {
 	 */
 	public void createGame(final short level) {
 
+		this.level = level;
 		given = GridCreator.NORMAL_GAME;
 		if (level >= 0 || level < LEVEL.length) {
 			given = LEVEL[level];
 		}
 
+		startCreation();
+	}
+
+	/**
+	 * Start creation a new game for a pool in the background.
+	 * 
+	 * @param level
+	 *            the index of the level
+	 * @param thePool
+	 *            the pool to deliver the game to
+	 */
+	public void createGameForPool(final short level, final PuzzlePool thePool) {
+
+		pool = thePool;
+		priority = Thread.MIN_PRIORITY;
+		createGame(level);
+	}
+
+	/**
+	 * Resume a creation from a checkpoint of {@link #suspend()}.
+	 * 
+	 * @param checkpoint
+	 *            the checkpoint
+	 * @throws IOException
+	 *             if the checkpoint can't be read
+	 */
+	public void resumeGame(final byte[] checkpoint) throws IOException {
+
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(checkpoint));
+
+		level = in.readShort();
+		given = in.readShort();
+		numberOfGeneratedGrids = in.readInt();
+		numberOfFoundGrids = in.readInt();
+		usedTime = in.readLong();
+
+		if (in.readBoolean()) {
+			final int rating = in.readInt();
+			final short foundGiven = in.readShort();
+			final byte[] gridBytes = new byte[in.readShort()];
+			in.readFully(gridBytes);
+			storeGrid(new Grid(gridBytes), foundGiven, rating);
+		}
+
+		startCreation();
+	}
+
+	/**
+	 * Set the number of threads creating grids at the same time, e.g. the
+	 * number of cores.
+	 * 
+	 * @param workers
+	 *            the number of threads
+	 */
+	public void setNumberOfWorkers(final int workers) {
+		this.numberOfWorkers = workers < 1 ? 1 : workers;
+	}
+
+	/**
+	 * Get the index of the level of the game.
+	 * 
+	 * @return the level
+	 */
+	public short getLevel() {
+		return level;
+	}
+
+	/**
+	 * Stop the creation and get a checkpoint of it, to resume it later with
+	 * {@link #resumeGame(byte[])}. The best game found so far and the progress
+	 * are kept, only the grid in generation is lost.
+	 * 
+	 * @return the checkpoint or null if the creation isn't running
+	 */
+	public byte[] suspend() {
+
+		if (!abort()) {
+			return null;
+		}
+
+		try {
+			return getCheckpoint();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Write the checkpoint of the creation.
+	 * 
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             if the checkpoint can't be written
+	 */
+	private synchronized byte[] getCheckpoint() throws IOException {
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(baos);
+
+		out.writeShort(level);
+		out.writeShort(given);
+		out.writeInt(numberOfGeneratedGrids);
+		out.writeInt(numberOfFoundGrids);
+		out.writeLong(usedTime + System.currentTimeMillis() - startTime);
+
+		out.writeBoolean(grid != null);
+		if (grid != null) {
+			out.writeInt(bestRating);
+			out.writeShort(bestGiven);
+			final byte[] gridBytes = grid.toByteArray();
+			out.writeShort(gridBytes.length);
+			out.write(gridBytes);
+		}
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Start the threads creating games until the best one is found.
+	 */
+	private void startCreation() {
+
+		startTime = System.currentTimeMillis();
+
 		Runnable r = new Runnable() {
 
 			public void run() {
 
 				if (startRunning()) {
-					int numberOfFoundGrids = 0;
-					int numberOfGeneratedGrid = 0;
-					boolean timeout = false;
-					final int maxIt = (given == GridCreator.HARD_GAME) ? preferences
+					maxIterations = (given == GridCreator.HARD_GAME) ? preferences
 							.getMaxCreationIterations()
 							: 1;
-					final long endTime = System.currentTimeMillis()
+					endTime = startTime - usedTime
 							+ preferences.getMaxCreationTimeout() * 1000;
 
-					while (isRunning()
-							&& (grid == null || (!timeout && numberOfFoundGrids < maxIt))) {
-
-						boolean foundUnique = CreatorTask.this
-								.generateNextGame(++numberOfGeneratedGrid);
+					// this thread is one of the workers
+					final Thread[] threads = new Thread[numberOfWorkers - 1];
+					for (int i = 0; i < threads.length; i++) {
+						threads[i] = new Thread(new Worker());
+						threads[i].setPriority(priority);
+						threads[i].start();
+					}
+					new Worker().run();
 
-						if (foundUnique) {
-							numberOfFoundGrids++;
+					for (int i = 0; i < threads.length; i++) {
+						try {
+							threads[i].join();
+						} catch (InterruptedException e) {
+							// go on waiting for the others
 						}
-
-						timeout = System.currentTimeMillis() > endTime;
-
-					} // end of while
+					}
 
 					if (abort()) {
 						grid.randomizeDigits();
 						Runnable r = new Runnable() {
 							public void run() {
-								midlet.gameCreated(grid);
+								if (pool != null) {
+									pool.puzzleCreated(CreatorTask.this,
+											level, grid);
+								} else {
+									midlet.gameCreated(grid);
+								}
 							}
 						};
 						midlet.invokeLater(r);
@@ -132,82 +326,169 @@ public class CreatorTask extends AbortableTask {
 		};
 
 		Thread t = new Thread(r);
+		t.setPriority(priority);
 		t.start();
 
 	}
 
 	/**
-	 * Generate a new game and check if it has a unique solution.
-	 * 
-	 * @param tryNbr
-	 *            the number within loop to display
-	 * @return true if unique solution found
+	 * Creates grids in its own thread until the best game is chosen.
 	 */
-	private boolean generateNextGame(final int tryNbr) {
+	private class Worker implements Runnable {
+
+		/**
+		 * Creates the grids of this worker.
+		 */
+		private final GridCreator creator = new GridCreator(CreatorTask.this);
+
+		/**
+		 * Rates the found games by the techniques needed to solve them.
+		 */
+		private final DifficultyRater rater = new DifficultyRater();
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+
+			while (isRunning() && !isFinished()) {
+				generateNextGame(nextTryNumber());
+			}
+		}
 
-		midlet.promoteProgress(Dict.getString("grid") + tryNbr
-				+ Dict.getString("generating"));
+		/**
+		 * Generate a new game and check if it has a unique solution.
+		 * 
+		 * @param tryNbr
+		 *            the number within loop to display
+		 */
+		private void generateNextGame(final int tryNbr) {
 
-		final Grid newGrid = GridCreator.getInstance().setTask(this)
-				.createNewUniqueGame(given);
+			promoteProgress(Dict.getString("grid") + tryNbr
+					+ Dict.getString("generating"));
 
-		if (newGrid != null) {
-			// found unique solution
-			checkAndStoreGrid(newGrid);
+			final Grid newGrid = creator.createNewUniqueGame(given);
 
-			midlet.promoteProgress(Dict.getString("grid") + tryNbr
-					+ Dict.getString("generated"));
+			if (newGrid != null && isRunning()) {
+				// found unique solution (a search stopped by the token proves
+				// nothing)
+				newGrid.setType(getTypeForHints(given));
+				checkAndStoreGrid(newGrid);
 
-			return true;
+				promoteProgress(Dict.getString("grid") + tryNbr
+						+ Dict.getString("generated"));
+			}
 		}
 
-		return false;
+		/**
+		 * Found a unique puzzle. Rate it and offer it as the best game.
+		 * 
+		 * @param gridToCheck
+		 *            the new generated grid
+		 */
+		private void checkAndStoreGrid(final Grid gridToCheck) {
+
+			final short foundGiven = gridToCheck.getNumberOfGiven();
+
+			// check complexity: hardest technique needed, then number of steps
+			// (for games needing guessing: the cells left to guess)
+			final int rating = rater.rate(gridToCheck);
+
+			offerGrid(gridToCheck, foundGiven, rating);
+		}
 	}
 
 	/**
-	 * Found a unique puzzle. Check if this puzzle is fullfilling the
-	 * requirements (number of given) and store it, if it is 'better'/'harder'
-	 * than the currently stored game.
+	 * Show the progress, unless creating in the background for a pool.
 	 * 
-	 * @param gridToCheck
-	 *            the new generated grid
+	 * @param text
+	 *            the info to show
 	 */
-	private void checkAndStoreGrid(final Grid gridToCheck) {
+	private void promoteProgress(final String text) {
 
-		final short foundGiven = gridToCheck.getNumberOfGiven();
+		if (pool == null) {
+			midlet.promoteProgress(text);
+		}
+	}
 
-		// check complexity
-		gridToCheck.setupPossibleDigits();
-		final short numberOfSingles = gridToCheck.getNumberOfSingles();
-		final short backtrackingDepth = gridToCheck.getBackTrackingDepth();
+	/**
+	 * Count the next generated grid.
+	 * 
+	 * @return the number of the grid
+	 */
+	private synchronized int nextTryNumber() {
+		return ++numberOfGeneratedGrids;
+	}
+
+	/**
+	 * Check if the best game is chosen: enough unique grids were compared or
+	 * the time is up. Once there is a game to deliver, the searches of all
+	 * workers stop exactly at the timeout, even within a grid.
+	 * 
+	 * @return true if no more grids are needed
+	 */
+	private synchronized boolean isFinished() {
 
 		if (grid == null) {
-			// no stored grid yet, so this is the 'best'
-			storeGrid(gridToCheck, foundGiven, numberOfSingles,
-					backtrackingDepth);
-			return;
+			return false;
 		}
+		getToken().setDeadline(endTime);
+		if (numberOfFoundGrids >= maxIterations
+				|| System.currentTimeMillis() > endTime) {
+			// stop the grids still in generation by the other workers
+			getToken().cancel();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get printable type.
+	 * 
+	 * @param givens
+	 *            number of given cells
+	 * @return String name for the level
+	 */
+	private String getTypeForHints(final short givens) {
 
-		// first check back-tracking depth
-		if (backtrackingDepth > bestBacktracking) {
-			// better back-tracking
-			storeGrid(gridToCheck, foundGiven, numberOfSingles,
-					backtrackingDepth);
+		if (givens <= GridCreator.HARD_GAME) {
+			return Dict.getString("hard");
 		} else {
-			if (backtrackingDepth == bestBacktracking) {
-				if (numberOfSingles + foundGiven < bestSingles + bestGiven) {
-					// same backtracking, but less given + singles
-					storeGrid(gridToCheck, foundGiven, numberOfSingles,
-							backtrackingDepth);
-				} else {
-					if (foundGiven < bestGiven) {
-						// only better number of givens
-						storeGrid(gridToCheck, foundGiven, numberOfSingles,
-								backtrackingDepth);
-					}
-				}
+			if (givens <= GridCreator.NORMAL_GAME) {
+				return Dict.getString("normal");
+			} else {
+				return Dict.getString("easy");
 			}
 		}
+	}
+
+	/**
+	 * Found a unique puzzle. Check if this puzzle is fullfilling the
+	 * requirements (number of given) and store it, if it is 'better'/'harder'
+	 * than the currently stored game. Called by all workers.
+	 * 
+	 * @param gridToCheck
+	 *            the new generated grid
+	 * @param foundGiven
+	 *            the number of givens
+	 * @param rating
+	 *            the rating of the {@link DifficultyRater}
+	 */
+	private synchronized void offerGrid(final Grid gridToCheck,
+			final short foundGiven, final int rating) {
+
+		if (!isRunning()) {
+			// the game is chosen already or the creation was aborted
+			return;
+		}
+		numberOfFoundGrids++;
+		if (grid == null || rating > bestRating
+				|| (rating == bestRating && foundGiven < bestGiven)) {
+			// no stored grid yet, harder or as hard with less givens
+			storeGrid(gridToCheck, foundGiven, rating);
+		}
 
 	}
 
@@ -216,16 +497,14 @@ public class CreatorTask extends AbortableTask {
 	 * 
 	 * @param gridToCheck
 	 * @param foundGiven
-	 * @param numberOfSingles
-	 * @param backtrackingDepth
+	 * @param rating
 	 */
-	private void storeGrid(final Grid gridToCheck, final short foundGiven,
-			final short numberOfSingles, final short backtrackingDepth) {
+	private synchronized void storeGrid(final Grid gridToCheck, final short foundGiven,
+			final int rating) {
 
 		gridToCheck.clearPencilMarks();
 		bestGiven = foundGiven;
-		bestSingles = numberOfSingles;
-		bestBacktracking = backtrackingDepth;
+		bestRating = rating;
 		grid = gridToCheck;
 
 	}
@@ -0,0 +1,307 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Vector;
+
+/**
+ * Exact cover solver (Algorithm X with dancing links) for user created
+ * puzzles.
+ *
+ * The sudoku is an exact cover problem with 324 constraints (every cell
+ * filled, every digit once per row, column and block) and 729 candidate rows
+ * (every digit in every cell). Always branching on the constraint with the
+ * fewest remaining rows keeps even almost empty grids fast.
+ *
+ * The links are stored in int arrays, which are reused for every search.
+ *
+ * @version $Id$
+ */
+public class DancingLinksSolver extends Solver {
+
+	/** Number of constraint columns. */
+	private static final int COLUMNS = 4 * 81;
+
+	/** Number of candidate rows (cell * 9 + digit - 1). */
+	private static final int ROWS = 81 * 9;
+
+	/** Number of nodes: root, column headers and 4 nodes per row. */
+	private static final int NODES = 1 + COLUMNS + 4 * ROWS;
+
+	/** Index of the root header. */
+	private static final int ROOT = 0;
+
+	/** Left link of every node. */
+	private final int[] left = new int[NODES];
+
+	/** Right link of every node. */
+	private final int[] right = new int[NODES];
+
+	/** Up link of every node. */
+	private final int[] up = new int[NODES];
+
+	/** Down link of every node. */
+	private final int[] down = new int[NODES];
+
+	/** Column header of every node. */
+	private final int[] column = new int[NODES];
+
+	/** Candidate row of every node. */
+	private final int[] rowOfNode = new int[NODES];
+
+	/** Number of rows left in every column. */
+	private final int[] size = new int[COLUMNS + 1];
+
+	/** Rows of the current partial solution. */
+	private final int[] solution = new int[81];
+
+	/** Digits of the givens and the current solution. */
+	private final byte[] solvedDigits = new byte[81];
+
+	/**
+	 * Create a new solver with the task to abort.
+	 *
+	 * @param solverTask
+	 *            the task to watch
+	 * @param findFirst
+	 *            indicates the solver to stop when one solution was found
+	 */
+	public DancingLinksSolver(final AbortableTask solverTask,
+			final boolean findFirst) {
+		super(solverTask, findFirst ? 1 : 2);
+	}
+
+	/**
+	 * Search the solutions of the given grid.
+	 *
+	 * @return Vector with the first solution(s).
+	 */
+	public final Vector searchSolutions(final Grid newGrid) {
+
+		// important: store a copy !
+		// because we manipulating shown digits
+		this.grid = newGrid.clone();
+		resetSolutions();
+
+		buildMatrix();
+
+		// remove the constraints already fulfilled by the givens
+		for (byte row = 0; row < 9; row++) {
+			for (byte col = 0; col < 9; col++) {
+				final GridSlot slot = grid.getSlot(row, col);
+				solvedDigits[row * 9 + col] = 0;
+				if (slot.isOriginalDigit() && slot.getShown() > 0) {
+					solvedDigits[row * 9 + col] = slot.getShown();
+					if (!selectGiven((row * 9 + col) * 9 + slot.getShown() - 1)) {
+						// givens in conflict => no solution at all
+						return finishSearch();
+					}
+				}
+			}
+		}
+
+		startSearchPhase();
+		search(0);
+
+		return finishSearch();
+	}
+
+	/**
+	 * Link the complete exact cover matrix.
+	 */
+	private void buildMatrix() {
+
+		// column headers in a ring with the root
+		for (int c = 0; c <= COLUMNS; c++) {
+			left[c] = c - 1;
+			right[c] = c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+			size[c] = 0;
+		}
+		left[ROOT] = COLUMNS;
+		right[COLUMNS] = ROOT;
+
+		int node = COLUMNS + 1;
+		for (int r = 0; r < ROWS; r++) {
+			final int cell = r / 9;
+			final int digit = r % 9;
+			final int first = node;
+
+			appendNode(node++, r, 1 + cell);
+			appendNode(node++, r, 1 + 81 + CandidateBoard.ROW[cell] * 9 + digit);
+			appendNode(node++, r, 1 + 162 + CandidateBoard.COL[cell] * 9 + digit);
+			appendNode(node++, r, 1 + 243 + CandidateBoard.BOX[cell] * 9 + digit);
+
+			// link the four nodes of the row in a ring
+			for (int n = first; n < node; n++) {
+				left[n] = (n == first) ? node - 1 : n - 1;
+				right[n] = (n == node - 1) ? first : n + 1;
+			}
+		}
+	}
+
+	/**
+	 * Add a node at the bottom of a column.
+	 *
+	 * @param node
+	 *            the node index
+	 * @param row
+	 *            the candidate row
+	 * @param col
+	 *            the column header
+	 */
+	private void appendNode(final int node, final int row, final int col) {
+
+		column[node] = col;
+		rowOfNode[node] = row;
+		up[node] = up[col];
+		down[node] = col;
+		down[up[col]] = node;
+		up[col] = node;
+		size[col]++;
+	}
+
+	/**
+	 * Put a given digit into the solution by covering all its columns.
+	 *
+	 * @param row
+	 *            the candidate row of the given
+	 * @return false if one of the columns is already covered by another given
+	 */
+	private boolean selectGiven(final int row) {
+
+		final int first = 1 + COLUMNS + 4 * row;
+		for (int n = first; n < first + 4; n++) {
+			final int col = column[n];
+			// a covered column is not reachable from its neighbours anymore
+			if (right[left[col]] != col) {
+				return false;
+			}
+		}
+		for (int n = first; n < first + 4; n++) {
+			cover(column[n]);
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a column and all rows using it.
+	 *
+	 * @param col
+	 *            the column header
+	 */
+	private void cover(final int col) {
+
+		right[left[col]] = right[col];
+		left[right[col]] = left[col];
+		for (int i = down[col]; i != col; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				size[column[j]]--;
+			}
+		}
+	}
+
+	/**
+	 * Undo {@link #cover(int)}.
+	 *
+	 * @param col
+	 *            the column header
+	 */
+	private void uncover(final int col) {
+
+		for (int i = up[col]; i != col; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				size[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[col]] = col;
+		left[right[col]] = col;
+	}
+
+	/**
+	 * Recursion call: choose the column with the fewest rows and try each of
+	 * its rows.
+	 *
+	 * @param depth
+	 *            number of rows in the partial solution
+	 */
+	private void search(final int depth) {
+
+		if (token != null && !token.visitNode()) {
+			// aborted or budget used up
+			return;
+		}
+		statistics.visitNode(depth);
+
+		if (isSolutionLimitReached()) {
+			// stop search
+			return;
+		}
+
+		if (right[ROOT] == ROOT) {
+			// every constraint fulfilled
+			storeSolution(depth);
+			return;
+		}
+
+		// column with minimum size
+		int col = right[ROOT];
+		for (int c = right[col]; c != ROOT; c = right[c]) {
+			if (size[c] < size[col]) {
+				col = c;
+			}
+		}
+		if (size[col] == 0) {
+			// dead end
+			return;
+		}
+
+		cover(col);
+		for (int r = down[col]; r != col; r = down[r]) {
+			solution[depth] = rowOfNode[r];
+			statistics.guesses++;
+			for (int j = right[r]; j != r; j = right[j]) {
+				cover(column[j]);
+			}
+
+			search(depth + 1);
+
+			for (int j = left[r]; j != r; j = left[j]) {
+				uncover(column[j]);
+			}
+
+			if (isSolutionLimitReached()) {
+				break;
+			}
+		}
+		statistics.backtracks++;
+		uncover(col);
+	}
+
+	/**
+	 * Fill in the rows of the solution and register it.
+	 *
+	 * @param depth
+	 *            number of rows in the solution
+	 */
+	private void storeSolution(final int depth) {
+
+		for (int i = 0; i < depth; i++) {
+			solvedDigits[solution[i] / 9] = (byte) (solution[i] % 9 + 1);
+		}
+		addSolution(solvedDigits, (short) 0);
+	}
+}
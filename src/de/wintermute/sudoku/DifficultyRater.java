@@ -0,0 +1,149 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Hashtable;
+
+/**
+ * Rate the difficulty of a puzzle the way a player solves it: by the hardest
+ * logical technique needed and the number of steps.
+ *
+ * The puzzle is solved step by step with a {@link StrategyEngine}, always
+ * using the cheapest technique that finds something. If no technique finds
+ * anything before the puzzle is solved, it needs guessing, which is rated
+ * above every technique.
+ *
+ * The rating is one int, comparable as a whole: the cost of the hardest
+ * technique times {@link #MAX_STEPS} plus the steps. Ratings are remembered
+ * by the givens, so rating the same puzzle again is free.
+ *
+ * A rater isn't thread safe, use one per thread.
+ *
+ * @version $Id$
+ */
+public class DifficultyRater {
+
+	/** Cost of a puzzle, which can't be solved without guessing. */
+	public static final int GUESSING_COST = 100;
+
+	/** Steps are counted up to this limit (exclusive). */
+	public static final int MAX_STEPS = 1000;
+
+	/** Number of remembered ratings before the memory is cleared. */
+	private static final int MAX_REMEMBERED = 256;
+
+	/** The techniques to solve with. */
+	private final StrategyEngine engine;
+
+	/** The board to solve on. */
+	private final CandidateBoard board = new CandidateBoard();
+
+	/** The givens of the rated puzzle. */
+	private final byte[] givens = new byte[CandidateBoard.CELLS];
+
+	/** The remembered ratings by encoded givens. */
+	private final Hashtable ratings = new Hashtable();
+
+	/**
+	 * Create a rater using all standard techniques.
+	 */
+	public DifficultyRater() {
+		this(new StrategyEngine());
+	}
+
+	/**
+	 * Create a rater using the given techniques.
+	 *
+	 * @param engine
+	 *            the techniques a player is expected to know
+	 */
+	public DifficultyRater(final StrategyEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Rate the given (original) digits of a grid.
+	 *
+	 * @param grid
+	 *            the puzzle
+	 * @return the rating or -1 if the givens are in conflict
+	 */
+	public int rate(final Grid grid) {
+
+		if (!board.load(grid)) {
+			return -1;
+		}
+
+		System.arraycopy(board.digits, 0, givens, 0, CandidateBoard.CELLS);
+		final String key = Solver.encode(givens);
+		final Integer known = (Integer) ratings.get(key);
+		if (known != null) {
+			return known.intValue();
+		}
+
+		final int rating = solve();
+
+		if (ratings.size() >= MAX_REMEMBERED) {
+			ratings.clear();
+		}
+		ratings.put(key, new Integer(rating));
+		return rating;
+	}
+
+	/**
+	 * Solve the loaded board step by step.
+	 *
+	 * @return the rating
+	 */
+	private int solve() {
+
+		final ITechnique[] techniques = engine.getTechniques();
+		int hardest = 0;
+		int steps = 0;
+
+		while (board.getEmptyCount() > 0) {
+			final int applied = engine.step(board);
+			if (applied < 0) {
+				// stuck or contradiction: every empty cell is a guess
+				hardest = GUESSING_COST;
+				steps += board.getEmptyCount();
+				break;
+			}
+			if (techniques[applied].getCost() > hardest) {
+				hardest = techniques[applied].getCost();
+			}
+			steps++;
+		}
+
+		return hardest * MAX_STEPS + Math.min(steps, MAX_STEPS - 1);
+	}
+
+	/**
+	 * Get the cost of the hardest technique of a rating.
+	 *
+	 * @param rating
+	 *            the rating from {@link #rate(Grid)}
+	 * @return the cost, {@link #GUESSING_COST} if guessing is needed
+	 */
+	public static int getHardestCost(final int rating) {
+		return rating / MAX_STEPS;
+	}
+
+	/**
+	 * Get the number of solving steps of a rating.
+	 *
+	 * @param rating
+	 *            the rating from {@link #rate(Grid)}
+	 * @return the steps
+	 */
+	public static int getSteps(final int rating) {
+		return rating % MAX_STEPS;
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Guess on the first empty cell (row by row), no matter how many candidates
+ * it has.
+ * 
+ * @version $Id$
+ */
+public class FirstEmptyCellHeuristic implements IBranchingHeuristic {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.wintermute.sudoku.IBranchingHeuristic#selectCell(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int selectCell(final CandidateBoard board) {
+
+		int cell = 0;
+		while (board.getDigit(cell) != 0) {
+			cell++;
+		}
+		return cell;
+	}
+}
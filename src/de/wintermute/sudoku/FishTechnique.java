@@ -0,0 +1,121 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Basic fish: X-Wing (2 lines) and Swordfish (3 lines).
+ *
+ * If the candidates of a digit in n rows lie in only n columns, the digit
+ * must be placed in these columns within these rows, so it can be removed
+ * from the other rows of these columns. The same holds with rows and columns
+ * swapped.
+ *
+ * @version $Id$
+ */
+public class FishTechnique implements ITechnique {
+
+	/** Number of lines (2 = X-Wing, 3 = Swordfish). */
+	private final int size;
+
+	/** Positions of the digit in every base line. */
+	private final int[] positions = new int[9];
+
+	/**
+	 * Create the technique.
+	 *
+	 * @param size
+	 *            2 for X-Wing, 3 for Swordfish
+	 */
+	public FishTechnique(final int size) {
+		this.size = size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#apply(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int apply(final CandidateBoard board) {
+
+		final int[] subsets = CandidateBoard.SUBSETS[size];
+
+		for (int bit = 1; bit <= CandidateBoard.ALL_DIGITS; bit <<= 1) {
+			// base lines are the rows (0..8), then the columns (9..17)
+			for (int base = 0; base <= 9; base += 9) {
+				final int cover = 9 - base;
+
+				for (int line = 0; line < 9; line++) {
+					final byte[] cells = CandidateBoard.UNITS[base + line];
+					int mask = 0;
+					for (int i = 0; i < 9; i++) {
+						if ((board.candidates[cells[i]] & bit) != 0) {
+							mask |= 1 << i;
+						}
+					}
+					// placed digits or more positions than lines don't fit
+					final int count = CandidateBoard.count(mask);
+					positions[line] = (count >= 2 && count <= size) ? mask : 0;
+				}
+
+				for (int s = 0; s < subsets.length; s++) {
+					final int lines = subsets[s];
+					int union = 0;
+					boolean complete = true;
+					for (int rest = lines; rest != 0; rest &= rest - 1) {
+						final int mask = positions[CandidateBoard.lowestDigit(rest) - 1];
+						if (mask == 0) {
+							complete = false;
+							break;
+						}
+						union |= mask;
+					}
+					if (!complete || CandidateBoard.count(union) != size) {
+						continue;
+					}
+
+					// remove the digit from the cover lines outside the base
+					int removed = 0;
+					for (int rest = union; rest != 0; rest &= rest - 1) {
+						final byte[] cells = CandidateBoard.UNITS[cover
+								+ CandidateBoard.lowestDigit(rest) - 1];
+						for (int i = 0; i < 9; i++) {
+							if ((lines & (1 << i)) == 0
+									&& board.eliminate(cells[i], bit)) {
+								removed++;
+							}
+						}
+					}
+					if (removed > 0) {
+						return removed;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getCost()
+	 */
+	public int getCost() {
+		return size == 2 ? 32 : 38;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getName()
+	 */
+	public String getName() {
+		return size == 2 ? "X-Wing" : "Swordfish";
+	}
+}
@@ -54,6 +54,28 @@ public class Grid {
 	 */
 	private short backTrackingDepth = 0;
 
+	/**
+	 * Number of shown digits per unit and digit: [unit * 9 + digit - 1]. The
+	 * units are the rows (0..8), the columns (9..17) and the blocks (18..26).
+	 * The slots report every change, so the counts are always up to date.
+	 */
+	private final byte[] shownCount = new byte[27 * 9];
+
+	/**
+	 * The digits shown at least once in every unit (bit 0 = digit 1).
+	 */
+	private final int[] shownMask = new int[27];
+
+	/**
+	 * Number of pencil marks per unit and digit: [unit * 9 + digit index].
+	 */
+	private final byte[] markCount = new byte[27 * 9];
+
+	/**
+	 * Number of slots showing a digit.
+	 */
+	private int filledCount = 0;
+
 	/**
 	 * Constructor: initialize the empty slots.
 	 * 
@@ -67,7 +89,7 @@ public class Grid {
 		// intialize array
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
-				board[row][col] = new GridSlot();
+				board[row][col] = new GridSlot(this, (byte) (row * 9 + col));
 			}
 		}
 
@@ -88,7 +110,7 @@ public class Grid {
 		// intialize array
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
-				board[row][col] = new GridSlot();
+				board[row][col] = new GridSlot(this, (byte) (row * 9 + col));
 			}
 		}
 
@@ -122,7 +144,7 @@ public class Grid {
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
 				final GridSlot toCopy = getSlot(row, col);
-				final GridSlot newSlot = newGrid.board[row][col] = new GridSlot();
+				final GridSlot newSlot = newGrid.board[row][col];
 
 				newSlot.setAnswer(toCopy.getAnswer());
 				newSlot.setShown(toCopy.getShown());
@@ -236,15 +258,121 @@ public class Grid {
 	 * @return true if all cells are occupied
 	 */
 	public boolean isCompletelyFilled() {
+		return filledCount == 81;
+	}
 
-		for (byte row = 0; row < 9; row++) {
-			for (byte col = 0; col < 9; col++) {
-				if (board[row][col].getShown() == 0) {
-					return false;
-				}
+	/**
+	 * Count a changed shown digit of a slot in its row, column and block.
+	 * Called by the slot.
+	 * 
+	 * @param cell
+	 *            the cell of the slot (row * 9 + col)
+	 * @param oldDigit
+	 *            the digit shown before (0 = empty)
+	 * @param newDigit
+	 *            the digit shown now (0 = empty)
+	 */
+	void shownChanged(final int cell, final byte oldDigit, final byte newDigit) {
+
+		final byte[] units = CandidateBoard.UNITS_OF_CELL[cell];
+		if (oldDigit > 0) {
+			for (int i = 0; i < 3; i++) {
+				countShown(units[i], oldDigit, -1);
 			}
+			filledCount--;
 		}
-		return true;
+		if (newDigit > 0) {
+			for (int i = 0; i < 3; i++) {
+				countShown(units[i], newDigit, 1);
+			}
+			filledCount++;
+		}
+	}
+
+	/**
+	 * Change the count of a shown digit in a unit.
+	 * 
+	 * @param unit
+	 *            the unit (0..26)
+	 * @param digit
+	 *            the digit (1..9)
+	 * @param delta
+	 *            +1 or -1
+	 */
+	private void countShown(final int unit, final byte digit, final int delta) {
+
+		final int index = unit * 9 + digit - 1;
+		shownCount[index] += delta;
+		if (shownCount[index] > 0) {
+			shownMask[unit] |= 1 << (digit - 1);
+		} else {
+			shownMask[unit] &= ~(1 << (digit - 1));
+		}
+	}
+
+	/**
+	 * Count changed pencil marks of a slot in its row, column and block.
+	 * Called by the slot.
+	 * 
+	 * @param cell
+	 *            the cell of the slot (row * 9 + col)
+	 * @param oldMarks
+	 *            the pencil marks before
+	 * @param newMarks
+	 *            the pencil marks now
+	 */
+	void pencilMarksChanged(final int cell, final int oldMarks,
+			final int newMarks) {
+
+		final byte[] units = CandidateBoard.UNITS_OF_CELL[cell];
+
+		int changed = (oldMarks ^ newMarks) & CandidateBoard.ALL_DIGITS;
+		while (changed != 0) {
+			final int idx = CandidateBoard.lowestDigit(changed) - 1;
+			changed &= changed - 1;
+
+			final int delta = (newMarks & (1 << idx)) != 0 ? 1 : -1;
+			for (int i = 0; i < 3; i++) {
+				markCount[units[i] * 9 + idx] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Get the digits shown in the row, column and block of a slot, except the
+	 * digit of the slot itself.
+	 * 
+	 * @param row
+	 *            the row of the slot
+	 * @param col
+	 *            the column of the slot
+	 * @return mask of the digits (bit 0 = digit 1)
+	 */
+	private int getDigitsShownByPeers(final byte row, final byte col) {
+
+		final byte own = board[row][col].getShown();
+		final byte[] units = CandidateBoard.UNITS_OF_CELL[row * 9 + col];
+		return getShownByOthers(units[0], own)
+				| getShownByOthers(units[1], own)
+				| getShownByOthers(units[2], own);
+	}
+
+	/**
+	 * Get the digits shown in a unit, without the own digit of a slot of this
+	 * unit, if nobody else shows it.
+	 * 
+	 * @param unit
+	 *            the unit (0..26)
+	 * @param own
+	 *            the digit of the slot (0 = empty)
+	 * @return mask of the digits
+	 */
+	private int getShownByOthers(final int unit, final byte own) {
+
+		if (own > 0 && shownCount[unit * 9 + own - 1] == 1) {
+			return shownMask[unit] & ~(1 << (own - 1));
+		}
+		return shownMask[unit];
 	}
 
 	/**
@@ -257,75 +385,23 @@ public class Grid {
 	 */
 	protected short setupPossibleDigits() {
 
-		// set everything to true
-		for (byte row = 0; row < 9; row++) {
-			for (byte col = 0; col < 9; col++) {
-				for (byte i = 0; i < 9; i++) {
-					this.getSlot(row, col).setPencilMark(i, true);
-				}
-			}
-		}
-
-		short sum = 81 * 9;
+		short sum = 0;
 
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
 				final GridSlot slot = this.getSlot(row, col);
 				final byte d = slot.getShown();
 
-				if (d > 0) {
-					// original slot => only this digit is valid
-					for (byte i = 0; i < 9; i++) {
-						if (i != d - 1) {
-							if (this.getSlot(row, col).isPencilMark(i))
-								sum--;
-							this.getSlot(row, col).setPencilMark(i, false);
-						}
-					}
-				}
-
-				// remove digits in row
-				for (byte r = 0; r < 9; r++) {
-					final GridSlot checkSlot = this.getSlot(r, col);
-					final byte digit = checkSlot.getShown();
-					if (digit > 0 && checkSlot != slot) {
-						if (this.getSlot(row, col).isPencilMark(digit - 1))
-							sum--;
-						this.getSlot(row, col).setPencilMark(digit - 1, false);
-					}
-				}
+				// a filled slot keeps only its digit, an empty one every digit
+				// not shown in its row, column and block
+				final int marks = (d > 0 ? 1 << (d - 1)
+						: CandidateBoard.ALL_DIGITS)
+						& ~getDigitsShownByPeers(row, col);
 
-				// remove digits in column
-				for (byte c = 0; c < 9; c++) {
-					final GridSlot checkSlot = this.getSlot(row, c);
-					final byte digit = checkSlot.getShown();
-					if (digit > 0 && checkSlot != slot) {
-						if (this.getSlot(row, col).isPencilMark(digit - 1))
-							sum--;
-						this.getSlot(row, col).setPencilMark(digit - 1, false);
-					}
-				}
-
-				// check blocks
-				final byte basicRow = (byte) (((byte) row / 3) * 3);
-				final byte basicCol = (byte) (((byte) col / 3) * 3);
-				for (byte i = 0; i < 3; i++) {
-					for (byte j = 0; j < 3; j++) {
-						final GridSlot checkSlot = this.getSlot(
-								(byte) (basicRow + i), (byte) (basicCol + j));
-						final byte digit = checkSlot.getShown();
-						if (digit > 0 && checkSlot != slot) {
-							if (this.getSlot(row, col)
-									.isPencilMark(digit - 1))
-								sum--;
-							this.getSlot(row, col).setPencilMark(digit - 1,
-									false);
-						}
-					}
-				}
-
-			} // foreach column
-		}// foreach row
+				slot.setPencilMarks(marks);
+				sum += CandidateBoard.count(marks);
+			}
+		}
 
 		return sum;
 	}
@@ -517,45 +593,26 @@ public class Grid {
 		emptyPositons.removeElement(pos);
 
 		// eliminate pencil marks
-		eliminatePencilMarks(pos, digit, emptyPositons);
+		eliminatePencilMarks(pos, digit);
 	}
 
 	/**
 	 * Remove all pencil marks of this digit in the same row, column and block.
-	 * Only check the still empty positons.
+	 * Only check the still empty positons, i.e. the peers not set as original
+	 * digit yet.
 	 * 
 	 * @param pos
 	 *            the position which had been solved
 	 * @param digit
 	 *            the digit of this position
-	 * @param emptyPositons
-	 *            the empty cells to check.
 	 */
-	private void eliminatePencilMarks(final Position pos, final byte digit,
-			final Vector emptyPositons) {
-
-		// loop over all still empty positions
-		final Enumeration positions = emptyPositons.elements();
-		while (positions.hasMoreElements()) {
-			final Position posToCheck = (Position) positions.nextElement();
-
-			// eliminate pencil marks
-			// check row
-			if (posToCheck.row == pos.row && posToCheck.col != pos.col) {
-				board[pos.row][posToCheck.col].setPencilMark(digit - 1, false);
-			}
+	private void eliminatePencilMarks(final Position pos, final byte digit) {
 
-			// check column
-			if (posToCheck.col == pos.col && posToCheck.row != pos.row) {
-				board[posToCheck.row][pos.col].setPencilMark(digit - 1, false);
-			}
-
-			// check block
-			if (posToCheck.getBlockNumber() == pos.getBlockNumber()) {
-				if (posToCheck.row != pos.row && posToCheck.col != pos.col) {
-					board[posToCheck.row][posToCheck.col].setPencilMark(
-							digit - 1, false);
-				}
+		final byte[] peers = CandidateBoard.PEERS[pos.row * 9 + pos.col];
+		for (int i = 0; i < peers.length; i++) {
+			final GridSlot slot = board[CandidateBoard.ROW[peers[i]]][CandidateBoard.COL[peers[i]]];
+			if (!slot.isOriginalDigit()) {
+				slot.setPencilMark(digit - 1, false);
 			}
 		}
 	}
@@ -593,22 +650,14 @@ public class Grid {
 	 */
 	public byte isSingle(final Position pos) {
 
-		int count = 0;
-		byte lastValidDigit = 0;
+		final int marks = board[pos.row][pos.col].getPencilMarks()
+				& CandidateBoard.ALL_DIGITS;
 
-		// count pencil marks for this slot
-		for (int i = 0; i < 9; i++) {
-			if (board[pos.row][pos.col].isPencilMark(i)) {
-				count++;
-				lastValidDigit = (byte) (i + 1);
-			}
-		}
-
-		if (count == 1) {
-			// found single
-			return lastValidDigit;
-		} else if (count == 0) {
+		if (marks == 0) {
 			return -1;
+		} else if ((marks & (marks - 1)) == 0) {
+			// found single
+			return CandidateBoard.lowestDigit(marks);
 		}
 
 		return 0;
@@ -652,44 +701,13 @@ public class Grid {
 	 */
 	public boolean isHiddenSingle(final Position pos, final byte digit) {
 
-		// check row
-		int count = 0;
-		for (byte r = 0; r < 9; r++) {
-			if (board[r][pos.col].isPencilMark(digit)) {
-				count++;
-			}
-		}
-		if (count == 1) {
-			return true;
-		}
-
-		// check column
-		count = 0;
-		for (byte c = 0; c < 9; c++) {
-			if (board[pos.row][c].isPencilMark(digit)) {
-				count++;
-			}
-		}
-		if (count == 1) {
-			return true;
-		}
-
-		// check 3x3 block
-		count = 0;
-		final byte blockStartRow = (byte) (((int) (pos.row / 3)) * 3);
-		final byte blockStartCol = (byte) (((int) (pos.col / 3)) * 3);
-		for (byte r = blockStartRow; r < blockStartRow + 3; r++) {
-			for (byte c = blockStartCol; c < blockStartCol + 3; c++) {
-
-				if (board[r][c].isPencilMark(digit)) {
-					count++;
-				}
+		// only one pencil mark of the digit in the row, column or block
+		final byte[] units = CandidateBoard.UNITS_OF_CELL[pos.row * 9 + pos.col];
+		for (int i = 0; i < 3; i++) {
+			if (markCount[units[i] * 9 + digit] == 1) {
+				return true;
 			}
 		}
-		if (count == 1) {
-			return true;
-		}
-
 		return false;
 	}
 
@@ -835,27 +853,6 @@ public class Grid {
 		return (short) (81 - allEmptyPositions().size());
 	}
 
-	/**
-	 * Get the number of 'Singles' and 'Hidden Singles'.
-	 * 
-	 * @return the current number of singles and hidden singles
-	 */
-	public short getNumberOfSingles() {
-
-		short sum = 0;
-
-		final Enumeration emptyPositions = allEmptyPositions().elements();
-		while (emptyPositions.hasMoreElements()) {
-			final Position pos = (Position) emptyPositions.nextElement();
-
-			if (isSingle(pos) > 0 || isHiddenSingle(pos) > 0) {
-				sum++;
-			}
-		}
-
-		return sum;
-	}
-
 	/**
 	 * Helper Method to check a grid if some 'basic' rules are valid for an user
 	 * edited grid.
@@ -864,17 +861,15 @@ public class Grid {
 	 */
 	public boolean checkForRules() {
 
-		setupPossibleDigits();
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
-				final GridSlot slot = getSlot(row, col);
-				int count = 0;
-				for (int i = 0; i < 9; i++) {
-					if (slot.isPencilMark(i)) {
-						count++;
-					}
-				}
-				if (count == 0) {
+				final byte d = getSlot(row, col).getShown();
+
+				// no digit left for the slot
+				final int possible = (d > 0 ? 1 << (d - 1)
+						: CandidateBoard.ALL_DIGITS)
+						& ~getDigitsShownByPeers(row, col);
+				if (possible == 0) {
 					return false;
 				}
 			}
@@ -964,33 +959,17 @@ public class Grid {
 			return null;
 		}
 		final Vector conflictPos = new Vector();
-		for (byte i = 0; i < 9; i++) {
-			// check row
-			if (i != row && board[i][col].getShown() == digit) {
-				conflictPos.addElement(new Position(i, col));
-			}
-			// check column
-			if (i != col && board[row][i].getShown() == digit) {
-				conflictPos.addElement(new Position(row, i));
-			}
+		if ((getDigitsShownByPeers(row, col) & (1 << (digit - 1))) == 0) {
+			// nobody else shows the digit
+			return conflictPos;
 		}
-
-		// check 3x3 block
-		final byte blockStartRow = (byte) (((int) (row / 3)) * 3);
-		final byte blockStartCol = (byte) (((int) (col / 3)) * 3);
-		for (byte r = blockStartRow; r < blockStartRow + 3; r++) {
-
-			if (r == row)
-				continue;
-
-			for (byte c = blockStartCol; c < blockStartCol + 3; c++) {
-
-				if (c == col)
-					continue;
-
-				if (board[r][c].getShown() == digit) {
-					conflictPos.addElement(new Position(r, c));
-				}
+		// check row, column and 3x3 block
+		final byte[] peers = CandidateBoard.PEERS[row * 9 + col];
+		for (int i = 0; i < peers.length; i++) {
+			final byte r = CandidateBoard.ROW[peers[i]];
+			final byte c = CandidateBoard.COL[peers[i]];
+			if (board[r][c].getShown() == digit) {
+				conflictPos.addElement(new Position(r, c));
 			}
 		}
 
@@ -1017,39 +996,9 @@ public class Grid {
 			return ALL_TRUE;
 		}
 		final boolean[] notAllowedDigits = new boolean[9];
-
-		for (byte digit = 1; digit < 10; digit++) {
-
-			for (byte i = 0; i < 9 && !notAllowedDigits[digit - 1]; i++) {
-				// check row
-				if (i != row && board[i][col].getShown() == digit) {
-					notAllowedDigits[digit - 1] = true;
-				}
-				// check column
-				if (i != col && board[row][i].getShown() == digit) {
-					notAllowedDigits[digit - 1] = true;
-				}
-			}
-
-			// check 3x3 block
-			final byte blockStartRow = (byte) (((int) (row / 3)) * 3);
-			final byte blockStartCol = (byte) (((int) (col / 3)) * 3);
-			for (byte r = blockStartRow; !notAllowedDigits[digit - 1]
-					&& r < blockStartRow + 3; r++) {
-
-				if (r == row)
-					continue;
-
-				for (byte c = blockStartCol; c < blockStartCol + 3; c++) {
-
-					if (c == col)
-						continue;
-
-					if (board[r][c].getShown() == digit) {
-						notAllowedDigits[digit - 1] = true;
-					}
-				}
-			}
+		final int shownByPeers = getDigitsShownByPeers(row, col);
+		for (int i = 0; i < 9; i++) {
+			notAllowedDigits[i] = (shownByPeers & (1 << i)) != 0;
 		}
 		return notAllowedDigits;
 	}
@@ -1061,43 +1010,14 @@ public class Grid {
 	 */
 	public boolean isValidSolution() {
 
-		for (byte row = 0; row < 9; row++) {
-			for (byte col = 0; col < 9; col++) {
-
-				final byte digit = board[row][col].getShown();
-				if (digit == 0)
-					return false;
-
-				for (byte i = 0; i < 9; i++) {
-					// check row
-					if (i != row && board[i][col].getShown() == digit) {
-						return false;
-					}
-					// check column
-					if (i != col && board[row][i].getShown() == digit) {
-						return false;
-					}
-				}
-
-				// check 3x3 block
-				final byte blockStartRow = (byte) (((int) (row / 3)) * 3);
-				final byte blockStartCol = (byte) (((int) (col / 3)) * 3);
-				for (byte r = blockStartRow; r < blockStartRow + 3; r++) {
-
-					if (r == row)
-						continue;
-
-					for (byte c = blockStartCol; c < blockStartCol + 3; c++) {
-
-						if (c == col)
-							continue;
-
-						if (board[r][c].getShown() == digit) {
-							return false;
-						}
-					}
-				}
+		if (filledCount != 81) {
+			return false;
+		}
 
+		// 9 slots showing 9 different digits in every unit
+		for (int unit = 0; unit < 27; unit++) {
+			if (shownMask[unit] != CandidateBoard.ALL_DIGITS) {
+				return false;
 			}
 		}
 		return true;
@@ -12,8 +12,6 @@ package de.wintermute.sudoku;
 import java.util.Random;
 import java.util.Vector;
 
-import de.wintermute.sudoku.res.Dict;
-
 /**
  * Create a new SODUKO puzzle.
  * 
@@ -22,6 +20,9 @@ import de.wintermute.sudoku.res.Dict;
  * 
  * The grid will have one solution, but there could be multiple solutions.
  * 
+ * A creator keeps its own state while creating a grid, so several threads
+ * can create grids at the same time, each with its own creator.
+ * 
  * @author Ivonne Engemann
  * @version $Id: GridCreator.java,v 1.28 2006/03/11 16:54:24 marcus Exp $
  */
@@ -45,34 +46,16 @@ public class GridCreator {
 	/** Hard Game given cells */
 	public final static short HARD_GAME = 23;
 
-
-	/**
-	 * For the starting grid use this digits for column one.
-	 */
-	private final static Byte[] NUMBERS = new Byte[9];
-	{
-		for (byte i = 1; i < 10; i++) {
-			NUMBERS[i - 1] = new Byte(i);
-		}
-	}
-
 	/**
 	 * Define number of symmetries which are available.
 	 */
 	private static final byte NUMBER_OF_SYMMETRIES = (byte) 3;
 
 	/**
-	 * Access the Grid Creator.
-	 * 
-	 * @return the GridCreator
+	 * Gives every creator its own random seed, even if several creators are
+	 * created within the same millisecond.
 	 */
-	public static GridCreator getInstance() {
-
-		if (instance == null)
-			instance = new GridCreator();
-		return instance;
-
-	}
+	private static final Random SEEDS = new Random();
 
 	/**
 	 * Store the grid itself.
@@ -87,98 +70,72 @@ public class GridCreator {
 	/**
 	 * Random functionality.
 	 */
-	private static final Random random = new Random();
-
-	/** the only creator */
-	private static GridCreator instance;
+	private final Random random;
 
 	/**
-	 * The abortable task.
+	 * Fills the empty grid with a random solution.
 	 */
-	private AbortableTask task;
+	private final GridFiller filler;
 
 	/**
-	 * The grid solver to use for unique-solution-check.
+	 * Derives the full grids from the seed grid.
 	 */
-	private GridSolver solver;
+	private final GridTransformer transformer;
 
 	/**
-	 * Set the abortable task (to stop generation).
-	 * 
-	 * @param task
+	 * The seed grid to derive all full grids from, null to fill each one.
 	 */
-	public GridCreator setTask(final AbortableTask task) {
-
-		this.task = task;
-		return this;
-	}
+	private byte[] seedGrid;
 
 	/**
-	 * Get printable type.
-	 * 
-	 * @param givens
-	 *            number of given cells
-	 * @return String name for the level
+	 * The digits of the full grid.
 	 */
-	private String getTypeForHints(final short givens) {
-
-		if (givens <= HARD_GAME) {
-			return Dict.getString("hard");
-		} else {
-			if (givens <= NORMAL_GAME) {
-				return Dict.getString("normal");
-			} else {
-				return Dict.getString("easy");
-			}
-		}
-	}
+	private final byte[] fullGrid = new byte[CandidateBoard.CELLS];
 
 	/**
-	 * Fill up the matrix with some inital values which do not intercept each other.
+	 * The abortable task.
 	 */
-	private void createInitialMatrix() {
-		// iterate over 3 of 9 blocks
-		for (int block = 0; block < 3; block++) {
-			final Vector numbers = getNumbers();
-			for (byte row = (byte) (block * 3); row < block * 3 + 3; row++) {
-				for (byte col = (byte) (block * 3); col < block * 3 + 3; col++) {
-					final GridSlot slot = board.getSlot(row, col);
-					final byte digit = removeRandomNumberFrom(numbers);
-					slot.setShown(digit);
-					slot.setAnswer(digit);
-					slot.setOriginalDigit(true);
-				}
-			}
-		}
+	private final AbortableTask task;
 
-	}
+	/**
+	 * Checks the unique solution while hiding digits.
+	 */
+	private final HoleDigger digger;
 
 	/**
-	 * Get the digits
-	 * @return Vector of possible digits
+	 * Create a creator.
+	 * 
+	 * @param task
+	 *            the abortable task (to stop generation), null to never stop
 	 */
-	private Vector getNumbers() {
-		final Vector numbers = new Vector(NUMBERS.length);
-		for (int i = 0; i < NUMBERS.length; i++) {
-			numbers.addElement(NUMBERS[i]);
+	public GridCreator(final AbortableTask task) {
+
+		this.task = task;
+		synchronized (SEEDS) {
+			random = new Random(SEEDS.nextLong());
 		}
-		return numbers;
+		filler = new GridFiller(random);
+		transformer = new GridTransformer(random);
+		// the workers of a task share its token, each counts on its own child
+		digger = new HoleDigger(task == null ? null
+				: new CancellationToken(task.getToken()));
 	}
 
 	/**
-	 * Get a random number.
-	 * @param numbers the Vector with the remaining numbers
-	 * @return the selected byte
+	 * Derive all full grids from a seed grid by swapping bands, stacks, rows
+	 * and columns, transposing and relabelling digits. This is much faster
+	 * than filling each grid, but all puzzles are variants of the same seed,
+	 * so it is meant for bulk generation.
+	 * 
+	 * @param seed
+	 *            the digit of every cell of a full grid, null to fill every
+	 *            grid at random again
+	 * @return the GridCreator
 	 */
-	private byte removeRandomNumberFrom(Vector numbers) {
-		final int size = numbers.size();
-		if (size == 0) {
-			return 0;
-		}
-		final int next = (Math.abs(random.nextInt()) % size);
-		final byte number = ((Byte) numbers.elementAt(next)).byteValue();
-		numbers.removeElementAt(next);
-		return number;
+	public GridCreator setSeedGrid(final byte[] seed) {
+
+		this.seedGrid = seed;
+		return this;
 	}
 
 	/**
@@ -198,8 +155,7 @@ public class GridCreator {
 		hideNumbersAtStartup(symmetry, hideAtStartup, positionsNotYetChecked);
 
 		// check if still unique solution
-		solver = new GridSolver(task);
-		if (!solver.checkForUniqueSolutionWithMixedStrategy(board)) {
+		if (!digger.start(board)) {
 			return false;
 		}
 
@@ -238,26 +194,28 @@ public class GridCreator {
 	 * 
 	 * @param newNumberOfGivens
 	 */
-	private void createShuffledBoard(final short newNumberOfGivens) {
+	void createShuffledBoard(final short newNumberOfGivens) {
 
-		board = new Grid(getTypeForHints(newNumberOfGivens));
+		// the printable type is set by the caller
+		board = new Grid("");
 		numberOfGivens = newNumberOfGivens;
 
-		// create an initial grid and create a solution for it
-		createInitialMatrix();
-
-		// the inital grid only hold independent numbers, so solve it now to get
-		// a full sudoku
-
-		Solver initalSolver = new BruteForceSolver(task, true);
-		Vector sol = initalSolver.searchSolutions(board);
-
-		if (!sol.isEmpty()) {
-			board = (Grid) sol.firstElement();
-			// prepare board for hiding numbers
-			board.setAllShownDigitsAsOriginal();
+		// a random full sudoku
+		if (seedGrid != null) {
+			transformer.transform(seedGrid, fullGrid);
 		} else {
-			board = null;
+			filler.fill(fullGrid);
+		}
+
+		// all digits given to start hiding them
+		for (byte row = 0; row < 9; row++) {
+			for (byte col = 0; col < 9; col++) {
+				final GridSlot slot = board.getSlot(row, col);
+				final byte digit = fullGrid[row * 9 + col];
+				slot.setShown(digit);
+				slot.setAnswer(digit);
+				slot.setOriginalDigit(true);
+			}
 		}
 	}
 
@@ -359,7 +317,8 @@ public class GridCreator {
 	/**
 	 * Hide as many numbers as possible. Check every time if puzzle still has a
 	 * unique solution. If not, unhide the last digits again and try some other.
-	 * Always check the not touched positions only.
+	 * Always check the not touched positions only. The digger only checks the
+	 * newly hidden digits, see {@link HoleDigger}.
 	 * 
 	 * @param symmetry
 	 *            the symmetry to use for hiding 2 or 4 digits at the same time
@@ -372,12 +331,12 @@ public class GridCreator {
 			short numbersToHide, final Vector positionsNotYetChecked) {
 
 		while (numbersToHide > 0 && !positionsNotYetChecked.isEmpty()
-				&& task.isRunning()) {
+				&& (task == null || task.isRunning())) {
 
 			final Vector hiddenNumbers = hideNumbersByRandomUsingSymmetry(
 					symmetry, positionsNotYetChecked);
 
-			if (solver.checkForUniqueSolutionWithMixedStrategy(board)) {
+			if (digger.tryHide(hiddenNumbers)) {
 				numbersToHide -= hiddenNumbers.size();
 			} else {
 				// reset
@@ -0,0 +1,126 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Random;
+
+/**
+ * Fill an empty 9x9 grid with a random solution.
+ *
+ * The cells are filled row by row. Every cell tries its free digits in random
+ * order and goes back to the cell before if none is left. The digits used in
+ * every row, column and block are bit masks, and the search only works on
+ * arrays allocated once, so a full grid takes a few microseconds.
+ *
+ * @version $Id$
+ */
+public class GridFiller {
+
+	/** Random functionality. */
+	private final Random random;
+
+	/** Digits used in every row. */
+	private final int[] rowUsed = new int[9];
+
+	/** Digits used in every column. */
+	private final int[] colUsed = new int[9];
+
+	/** Digits used in every block. */
+	private final int[] boxUsed = new int[9];
+
+	/** The digits not yet tried in every cell. */
+	private final int[] untried = new int[CandidateBoard.CELLS];
+
+	/** The digit of every cell (0 = empty). */
+	private final byte[] digits = new byte[CandidateBoard.CELLS];
+
+	/**
+	 * Create a filler.
+	 *
+	 * @param random
+	 *            the random source
+	 */
+	public GridFiller(final Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Fill a grid with a random solution.
+	 *
+	 * @param target
+	 *            the array to fill, one digit per cell
+	 */
+	public void fill(final byte[] target) {
+
+		for (int i = 0; i < 9; i++) {
+			rowUsed[i] = 0;
+			colUsed[i] = 0;
+			boxUsed[i] = 0;
+		}
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			digits[cell] = 0;
+		}
+
+		int cell = 0;
+		untried[0] = CandidateBoard.ALL_DIGITS;
+		while (cell < CandidateBoard.CELLS) {
+			final int row = CandidateBoard.ROW[cell];
+			final int col = CandidateBoard.COL[cell];
+			final int box = CandidateBoard.BOX[cell];
+
+			// take back the digit tried before
+			if (digits[cell] != 0) {
+				final int old = ~(1 << (digits[cell] - 1));
+				rowUsed[row] &= old;
+				colUsed[col] &= old;
+				boxUsed[box] &= old;
+				digits[cell] = 0;
+			}
+
+			final int left = untried[cell];
+			if (left == 0) {
+				// no digit fits, change the cell before
+				cell--;
+				continue;
+			}
+			final int bit = randomBit(left);
+			untried[cell] = left & ~bit;
+			rowUsed[row] |= bit;
+			colUsed[col] |= bit;
+			boxUsed[box] |= bit;
+			digits[cell] = CandidateBoard.lowestDigit(bit);
+
+			cell++;
+			if (cell < CandidateBoard.CELLS) {
+				untried[cell] = CandidateBoard.ALL_DIGITS
+						& ~(rowUsed[CandidateBoard.ROW[cell]]
+								| colUsed[CandidateBoard.COL[cell]]
+								| boxUsed[CandidateBoard.BOX[cell]]);
+			}
+		}
+		System.arraycopy(digits, 0, target, 0, CandidateBoard.CELLS);
+	}
+
+	/**
+	 * Choose one of the digits of a mask.
+	 *
+	 * @param mask
+	 *            the digits, not 0
+	 * @return the bit of the chosen digit
+	 */
+	private int randomBit(final int mask) {
+
+		int left = mask;
+		for (int skip = (random.nextInt() >>> 1) % CandidateBoard.count(mask); skip > 0; skip--) {
+			left &= left - 1;
+		}
+		return left & -left;
+	}
+}
@@ -14,6 +14,9 @@ package de.wintermute.sudoku;
  * 
  * Conatins the solution and the current display state.
  * 
+ * A slot belonging to a grid reports every change of the shown digit and of
+ * the pencil marks to the grid, which keeps its unit counts up to date.
+ * 
  * @author Ivonne Engemann
  * @version $Id: GridSlot.java,v 1.7 2006/03/27 20:45:58 Ivonne Exp $
  */
@@ -42,6 +45,36 @@ public class GridSlot {
 	 */
 	private int pencilMarks = 0;
 
+	/**
+	 * The grid to report changes to, null for a slot without grid.
+	 */
+	private final Grid grid;
+
+	/**
+	 * The cell (row * 9 + col) of the slot within its grid.
+	 */
+	private final byte cell;
+
+	/**
+	 * Create a slot without grid.
+	 */
+	public GridSlot() {
+		this(null, (byte) 0);
+	}
+
+	/**
+	 * Create a slot of a grid.
+	 * 
+	 * @param grid
+	 *            the grid to report changes to
+	 * @param cell
+	 *            the cell (row * 9 + col)
+	 */
+	GridSlot(final Grid grid, final byte cell) {
+		this.grid = grid;
+		this.cell = cell;
+	}
+
 	public byte getAnswer() {
 		return answer;
 	}
@@ -55,6 +88,9 @@ public class GridSlot {
 	}
 
 	public void setShown(byte shown) {
+		if (grid != null && shown != this.shown) {
+			grid.shownChanged(cell, this.shown, shown);
+		}
 		this.shown = shown;
 	}
 
@@ -78,6 +114,9 @@ public class GridSlot {
 	}
 
 	public void setPencilMarks(final int pencilMarks) {
+		if (grid != null && pencilMarks != this.pencilMarks) {
+			grid.pencilMarksChanged(cell, this.pencilMarks, pencilMarks);
+		}
 		this.pencilMarks = pencilMarks;
 	}
 
@@ -139,9 +178,9 @@ public class GridSlot {
 	 */
 	public void setPencilMark(final int idx, final boolean mark) {
 		if (mark) {
-			this.pencilMarks |= (1 << idx);
+			setPencilMarks(pencilMarks | (1 << idx));
 		} else {
-			this.pencilMarks &= ~(1 << idx);
+			setPencilMarks(pencilMarks & ~(1 << idx));
 		}
 	}
 
@@ -9,7 +9,6 @@
  ******************************************************************************/
 package de.wintermute.sudoku;
 
-import java.util.Enumeration;
 import java.util.Vector;
 
 /**
@@ -23,6 +22,32 @@ import java.util.Vector;
 
 public class GridSolver extends Solver {
 
+	/**
+	 * The policy to choose the cell for the next guess.
+	 */
+	private IBranchingHeuristic branchingHeuristic = new MinimumRemainingValuesHeuristic();
+
+	/**
+	 * The logical techniques to apply before each guess, null for singles
+	 * only.
+	 */
+	private StrategyEngine strategyEngine = null;
+
+	/**
+	 * The cell guessed on each level of the search.
+	 */
+	private final byte[] guessCell = new byte[CandidateBoard.CELLS];
+
+	/**
+	 * The candidates not yet tried on each level of the search.
+	 */
+	private final int[] guessesLeft = new int[CandidateBoard.CELLS];
+
+	/**
+	 * The trail mark before the guess of each level of the search.
+	 */
+	private final int[] guessMark = new int[CandidateBoard.CELLS];
+
 	/**
 	 * Create GridSolver with a Watchdog.
 	 * 
@@ -30,7 +55,28 @@ public class GridSolver extends Solver {
 	 *            the Task to watch.
 	 */
 	public GridSolver(final AbortableTask runningTask) {
-		super(runningTask);
+		// stop at the second solution
+		super(runningTask, 2);
+	}
+
+	/**
+	 * Set the policy to choose the cell for the next guess.
+	 * 
+	 * @param heuristic
+	 *            the branching heuristic to use
+	 */
+	public void setBranchingHeuristic(final IBranchingHeuristic heuristic) {
+		this.branchingHeuristic = heuristic;
+	}
+
+	/**
+	 * Set the logical techniques to apply after the singles before each guess.
+	 * 
+	 * @param engine
+	 *            the techniques or null to use singles only
+	 */
+	public void setStrategyEngine(final StrategyEngine engine) {
+		this.strategyEngine = engine;
 	}
 
 	/**
@@ -73,6 +119,30 @@ public class GridSolver extends Solver {
 		return possibleSolutions;
 	}
 
+	/**
+	 * Find solutions of a grid, whose answer is not known (e.g. a puzzle
+	 * entered by the user or read from a file).
+	 * 
+	 * @param newGrid
+	 *            the grid to check
+	 * @return the solutions
+	 */
+	public final Vector searchSolutionsWithoutAnswer(final Grid newGrid) {
+
+		findSolutionsWithMixedStrategy(false, newGrid);
+		return possibleSolutions;
+	}
+
+	/**
+	 * Count without the answers of the grid, which are not known for a
+	 * puzzle of the user.
+	 * 
+	 * @see de.wintermute.sudoku.Solver#searchSolutionsToCount(de.wintermute.sudoku.Grid)
+	 */
+	protected final Vector searchSolutionsToCount(final Grid newGrid) {
+		return searchSolutionsWithoutAnswer(newGrid);
+	}
+
 	/**
 	 * Find possible solutions of the grid. If checkUnique is true, stop search
 	 * if found second solution.
@@ -87,196 +157,131 @@ public class GridSolver extends Solver {
 			final boolean containsValidSolution, final Grid newGrid) {
 
 		// important: store a copy !
-		// because we manipulating pencil marks and shown digiots
+		// because we manipulating shown digits
 		this.grid = newGrid.clone();
-		possibleSolutions.removeAllElements();
+		resetSolutions();
 
 		if (containsValidSolution) {
 			// one solution is already found
 			addFirstSolution();
 		}
 
-		// initialize pencil marks
-		final Vector emptyPositions = grid.allEmptyPositions();
-		grid.intializePencilMarks(emptyPositions);
-
-		// start with 'single' strategy, do not check for unsolvable cells here,
-		// because this puzzle is valid
-		solveWithSingleStrategy(grid, emptyPositions);
+		// initialize candidates from the given digits
+		if (!board.load(grid)) {
+			return finishSearch();
+		}
 
-		// store current emptyPositions for later compare to check for unique
-		// solution
-		emptyPositionsForCompare = new Position[emptyPositions.size()];
-		emptyPositions.copyInto(this.emptyPositionsForCompare);
+		// start with 'single' strategy, a contradiction means no solution
+		if (!propagate()) {
+			return finishSearch();
+		}
 
 		// solve the remaining with back-tracking
-		solveWithGuessStrategy(grid, emptyPositions, (short) 1);
+		startSearchPhase();
+		solveWithGuessStrategy();
 
-		return possibleSolutions;
-	}
-
-	/**
-	 * Check for 'Hidden Singles' in the current grid and set the obvious digit.
-	 * Check only the empty cells.
-	 * 
-	 * @param currentGrid
-	 *            the grid to check
-	 * @param emptyPositions
-	 *            the still empty positions.
-	 * @return number of found hidden singles
-	 */
-	private static short checkForHiddenSingles(final Grid currentGrid,
-			final Vector emptyPositions) {
-
-		short singleFound = 0;
-
-		final Enumeration positions = emptyPositions.elements();
-		while (positions.hasMoreElements()) {
-			final Position pos = (Position) positions.nextElement();
-
-			final byte digit = currentGrid.isHiddenSingle(pos);
-			if (digit != 0) {
-				currentGrid.setSolvedDigit(pos, digit, emptyPositions);
-				singleFound++;
-			}
-
-		}
-		return singleFound;
+		return finishSearch();
 	}
 
 	/**
-	 * Check for 'Singles' and solve these obvious digits. Only check the empty
-	 * cells.
-	 * 
-	 * @param currentGrid
-	 *            the grid to check
-	 * @param emptyPositions
-	 *            the empty positions to check
+	 * Check for 'Singles' and 'Hidden Singles' as long as no more obvious
+	 * digits found. Only the cells and units changed since the last call are
+	 * checked, see {@link CandidateBoard#propagateSingles()}.
 	 * 
-	 * @return number of found singles or -1 if an unsolvable cell was found
+	 * @param current
+	 *            the board to check
+	 * @return false if not solvable
 	 */
-	private static short checkForSingles(final Grid currentGrid,
-			final Vector emptyPositions) {
-
-		short singleFound = 0;
-
-		final Enumeration positions = emptyPositions.elements();
-		while (positions.hasMoreElements()) {
-			final Position pos = (Position) positions.nextElement();
-
-			final byte digit = currentGrid.isSingle(pos);
-			if (digit == -1) {
-				// unsolvable cell found => abort
-				return -1;
-			} else if (digit != 0) {
-				currentGrid.setSolvedDigit(pos, digit, emptyPositions);
-				singleFound++;
-			}
-
-		}
-		return singleFound;
+	static boolean solveWithSingleStrategy(final CandidateBoard current) {
+		return current.propagateSingles();
 	}
 
 	/**
-	 * Check for 'Singles' and 'Hidden Singles' as long as no more obvious
-	 * digits found.
+	 * Find the singles and, if set, apply the strategy engine.
 	 * 
-	 * @param currentGrid
-	 *            the grid to check
-	 * @param emptyPositions
-	 *            the empty positions
 	 * @return false if not solvable
 	 */
-	private static boolean solveWithSingleStrategy(final Grid currentGrid,
-			final Vector emptyPositions) {
+	private boolean propagate() {
 
-		int size = emptyPositions.size();
-		int oldSize = size;
-
-		do {
-			oldSize = size;
-
-			short found = checkForSingles(currentGrid, emptyPositions);
-			if (found == -1) {
-				// unsolvable found
-				return false;
-			}
-			checkForHiddenSingles(currentGrid, emptyPositions);
-
-			// loop until nothing is found anymore
-			size = emptyPositions.size();
-
-		} while (size != oldSize);
-
-		return true;
+		if (!solveWithSingleStrategy(board)) {
+			return false;
+		}
+		return strategyEngine == null || strategyEngine.propagate(board);
 	}
 
 	/**
-	 * Recursive call to solve the puzzle via back tracking. Guess a digit and
-	 * then check for obvious singles.
+	 * Solve the puzzle via back tracking. Guess a digit and then check for
+	 * obvious singles. After each guess the board is set back via its trail,
+	 * so guessing doesn't allocate or copy anything.
 	 * 
-	 * @param currentGrid
-	 *            the grid to check
-	 * @param emptyPositions
-	 *            the empty cells
-	 * @param depth
-	 *            increase the back-tracking depth to calculate complexity
+	 * The search is iterative: every open guess is one level on the
+	 * preallocated guess stacks instead of a recursive call, so the depth
+	 * doesn't depend on the thread stack.
 	 */
-	private void solveWithGuessStrategy(final Grid currentGrid,
-			final Vector emptyPositions, final short depth) {
+	private void solveWithGuessStrategy() {
 
-		if (task != null && !task.isRunning()) {
-			// abort
-			return;
-		}
+		int level = 0;
+		boolean descend = true;
 
-		if (possibleSolutions.size() > 1) {
-			// second solution found, but only unique-check required =>
-			// stop
-			return;
-		}
+		while (true) {
 
-		if (emptyPositions.isEmpty()) {
+			if (descend) {
+				descend = false;
 
-			// all cells filled
-			addSolution(currentGrid, depth);
-			// back
-			return;
-		}
-
-		final Position nextPos = (Position) emptyPositions.firstElement();
-		emptyPositions.removeElement(nextPos);
-
-		for (byte digit = 1; digit <= 9; digit++) {
-
-			if (currentGrid.getSlot(nextPos.row, nextPos.col).isPencilMark(
-					digit - 1)) {
+				if (token != null && !token.visitNode()) {
+					// aborted or budget used up
+					break;
+				}
+				statistics.visitNode(level);
 
-				// copy grid before next guess
-				final Grid copyGrid = currentGrid.clone();
+				if (isSolutionLimitReached()) {
+					// second solution found, but only unique-check required =>
+					// stop
+					break;
+				}
 
-				// copy vector of pencilmarks before next guess
-				final Vector copyPos = new Vector();
-				final Enumeration positions = emptyPositions.elements();
-				while (positions.hasMoreElements()) {
-					final Position pos = (Position) positions.nextElement();
-					copyPos.addElement(pos);
+				if (board.getEmptyCount() == 0) {
+					// all cells filled, the depth counts the open guesses
+					addSolution(board.digits, (short) (level + 1));
+				} else {
+					// open a new level for the next cell
+					final int nextCell = branchingHeuristic.selectCell(board);
+					guessCell[level] = (byte) nextCell;
+					guessesLeft[level] = board.getCandidates(nextCell);
+					guessMark[level] = board.mark();
+					level++;
 				}
+			}
 
-				// set the digit in the copy grid
-				copyGrid.setSolvedDigit(nextPos, digit, copyPos);
+			if (level == 0) {
+				// all guesses tried
+				break;
+			}
 
-				// check for singles
-				if (solveWithSingleStrategy(copyGrid, copyPos)) {
+			// take back the last guess and everything following from it
+			final int top = level - 1;
+			board.undo(guessMark[top]);
 
-					// recursion with next postion
-					solveWithGuessStrategy(copyGrid, copyPos,
-							(short) (depth + 1));
-				}
+			final int guesses = guessesLeft[top];
+			if (guesses == 0) {
+				// back to the level before
+				level--;
+				statistics.backtracks++;
+				continue;
 			}
+			guessesLeft[top] = guesses & (guesses - 1);
 
+			// set the next digit, check for singles and further logical
+			// steps and go deeper if still solvable
+			board.place(guessCell[top], CandidateBoard.lowestDigit(guesses));
+			statistics.guesses++;
+			descend = propagate();
 		}
 
+		if (level > 0) {
+			// stopped early: take back all open guesses
+			board.undo(guessMark[0]);
+		}
 	}
 
 	/**
@@ -286,17 +291,16 @@ public class GridSolver extends Solver {
 	 */
 	private void addFirstSolution() {
 
-		final Grid firstSolution = grid.clone();
+		final byte[] answers = new byte[CandidateBoard.CELLS];
 
 		for (byte row = 0; row < 9; row++) {
 			for (byte col = 0; col < 9; col++) {
-				final GridSlot slot = firstSolution.getSlot(row, col);
-				// copy the answer to the display
-				slot.setShown(slot.getAnswer());
+				// copy the answer
+				answers[row * 9 + col] = grid.getSlot(row, col).getAnswer();
 			}
 		}
 
-		addSolution(firstSolution, (short) 0);
+		addSolution(answers, (short) 0);
 
 	}
 
@@ -29,6 +29,12 @@ public class GridStore {
 	/** Storage name for Autosave game */
 	private static final String AUTO_SAVE_FILENAME = "AUTO_SAVE";
 
+	/** Storage name for the checkpoint of a suspended game creation */
+	private static final String CREATOR_CHECKPOINT_FILENAME = "CREATOR_CHECKPOINT";
+
+	/** Storage name for the pool of ready puzzles */
+	private static final String PUZZLE_POOL_FILENAME = "PUZZLE_POOL";
+
 	/**
 	 * Get the stored games.
 	 * 
@@ -41,7 +47,9 @@ public class GridStore {
 
 		for (int i = 0; i < recordStores.length; i++) {
 			if (!recordStores[i].equals(SettingsStore.SETTING_FILE_NAME)
-					&& !recordStores[i].equals(Dict.PREF_LANG_FILE_NAME)) {
+					&& !recordStores[i].equals(Dict.PREF_LANG_FILE_NAME)
+					&& !recordStores[i].equals(CREATOR_CHECKPOINT_FILENAME)
+					&& !recordStores[i].equals(PUZZLE_POOL_FILENAME)) {
 				v.addElement(recordStores[i]);
 			}
 		}
@@ -101,13 +109,32 @@ public class GridStore {
 	 * @return loaded Grid or null in case of error
 	 */
 	public static Grid loadGrid(final String filename) {
+
+		final byte[] byteArray = loadRecord(filename);
+		if (byteArray != null) {
+			try {
+				return new Grid(byteArray);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Load the first record of a record store.
+	 * 
+	 * @param filename
+	 *            the name of the record store
+	 * @return the record or null in case of error
+	 */
+	private static byte[] loadRecord(final String filename) {
 		RecordStore recordStore = null;
 		try {
 			recordStore = RecordStore.openRecordStore(filename, true);
 
-			final byte[] byteArray = recordStore.getRecord(1);
-			if (byteArray != null) {
-				return new Grid(byteArray);
+			if (recordStore.getNumRecords() > 0) {
+				return recordStore.getRecord(1);
 			}
 
 		} catch (Exception e) {
@@ -140,14 +167,29 @@ public class GridStore {
 			return false;
 		}
 
+		try {
+			return saveRecord(filename, grid.toByteArray());
+		} catch (Exception ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Save data as first record of a record store.
+	 * 
+	 * @param filename
+	 *            the name of the record store
+	 * @param b
+	 *            the data to save
+	 * @return true if save completed
+	 */
+	private static boolean saveRecord(final String filename, final byte[] b) {
+
 		// Add it to the record store
 		RecordStore recordStore = null;
 		try {
 			recordStore = RecordStore.openRecordStore(filename, true);
 
-			// Extract the byte array
-			final byte[] b = grid.toByteArray();
-
 			if (recordStore.getNumRecords() == 0) {
 				recordStore.addRecord(b, 0, b.length);
 			} else {
@@ -182,4 +224,57 @@ public class GridStore {
 
 	}
 
+	/**
+	 * Save the checkpoint of a suspended game creation.
+	 * 
+	 * @param checkpoint
+	 *            the checkpoint from {@link CreatorTask#suspend()}
+	 * @return true if save was completed
+	 */
+	public static boolean saveCreatorCheckpoint(final byte[] checkpoint) {
+
+		return saveRecord(CREATOR_CHECKPOINT_FILENAME, checkpoint);
+	}
+
+	/**
+	 * Read the checkpoint of a suspended game creation. If not stored, return
+	 * null.
+	 * 
+	 * @return the checkpoint or null
+	 */
+	public static byte[] getCreatorCheckpoint() {
+
+		return loadRecord(CREATOR_CHECKPOINT_FILENAME);
+	}
+
+	/**
+	 * Delete the checkpoint of a suspended game creation.
+	 */
+	public static void deleteCreatorCheckpoint() {
+
+		deleteGrid(CREATOR_CHECKPOINT_FILENAME);
+	}
+
+	/**
+	 * Save the pool of ready puzzles.
+	 * 
+	 * @param pool
+	 *            the pool, see {@link PuzzlePool}
+	 * @return true if save was completed
+	 */
+	public static boolean savePuzzlePool(final byte[] pool) {
+
+		return saveRecord(PUZZLE_POOL_FILENAME, pool);
+	}
+
+	/**
+	 * Read the pool of ready puzzles. If not stored, return null.
+	 * 
+	 * @return the pool or null
+	 */
+	public static byte[] getPuzzlePool() {
+
+		return loadRecord(PUZZLE_POOL_FILENAME);
+	}
+
 }
@@ -0,0 +1,135 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Random;
+
+/**
+ * Derive new solution grids from a seed grid without any search.
+ *
+ * Every transformation keeps a valid sudoku valid: swapping bands (groups of
+ * three rows) or stacks (groups of three columns), swapping rows within a band
+ * or columns within a stack, transposing, and relabelling the digits. A random
+ * combination of all of them is one pass over the 81 cells.
+ *
+ * @version $Id$
+ */
+public class GridTransformer {
+
+	/** Random functionality. */
+	private final Random random;
+
+	/** The seed row of every target row. */
+	private final int[] rowMap = new int[9];
+
+	/** The seed column of every target column. */
+	private final int[] colMap = new int[9];
+
+	/** Order of the bands or stacks. */
+	private final int[] bands = new int[3];
+
+	/** Order of the rows or columns within a band or stack. */
+	private final int[] lines = new int[3];
+
+	/** The new digit of every seed digit (index 0 stays empty). */
+	private final byte[] digitMap = new byte[10];
+
+	/**
+	 * Create a transformer.
+	 *
+	 * @param random
+	 *            the random source
+	 */
+	public GridTransformer(final Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Derive a random grid from a seed grid.
+	 *
+	 * @param seed
+	 *            the digit of every cell of the seed grid (0 = empty)
+	 * @param target
+	 *            the array to fill, not the seed itself
+	 */
+	public void transform(final byte[] seed, final byte[] target) {
+
+		shuffleLines(rowMap);
+		shuffleLines(colMap);
+
+		digitMap[0] = 0;
+		for (byte digit = 1; digit <= 9; digit++) {
+			digitMap[digit] = digit;
+		}
+		for (int i = 9; i > 1; i--) {
+			final int j = randomIndex(i) + 1;
+			final byte swap = digitMap[i];
+			digitMap[i] = digitMap[j];
+			digitMap[j] = swap;
+		}
+
+		final boolean transpose = (random.nextInt() & 1) != 0;
+		for (int row = 0; row < 9; row++) {
+			for (int col = 0; col < 9; col++) {
+				final int from = transpose ? colMap[col] * 9 + rowMap[row]
+						: rowMap[row] * 9 + colMap[col];
+				target[row * 9 + col] = digitMap[seed[from]];
+			}
+		}
+	}
+
+	/**
+	 * Create a random order of the rows (or columns): the bands in random
+	 * order, the rows of every band in random order.
+	 *
+	 * @param map
+	 *            the array to fill with the seed line of every target line
+	 */
+	private void shuffleLines(final int[] map) {
+
+		shuffle(bands);
+		for (int band = 0; band < 3; band++) {
+			shuffle(lines);
+			for (int line = 0; line < 3; line++) {
+				map[band * 3 + line] = bands[band] * 3 + lines[line];
+			}
+		}
+	}
+
+	/**
+	 * Fill an array with 0, 1, 2 in random order.
+	 *
+	 * @param order
+	 *            the array of three entries
+	 */
+	private void shuffle(final int[] order) {
+
+		for (int i = 0; i < 3; i++) {
+			order[i] = i;
+		}
+		for (int i = 2; i > 0; i--) {
+			final int j = randomIndex(i + 1);
+			final int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+	}
+
+	/**
+	 * Get a random number from 0 to (n-1).
+	 *
+	 * @param n
+	 *            the range
+	 * @return the number
+	 */
+	private int randomIndex(final int n) {
+		return (random.nextInt() >>> 1) % n;
+	}
+}
@@ -0,0 +1,310 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Enumeration;
+import java.util.Vector;
+
+/**
+ * Check step by step if a puzzle keeps its unique solution while its givens
+ * are hidden.
+ *
+ * If the puzzle was unique before, another solution after hiding some cells
+ * must differ from the known solution in one of these cells. So only the
+ * hidden cells are checked: is there a solution with another digit in them?
+ * Such a search is much smaller than counting to two solutions of the whole
+ * puzzle.
+ *
+ * Every other solution found is kept. Hiding cells which would make one of
+ * them valid again is rejected at once, without any search.
+ *
+ * @version $Id$
+ */
+public class HoleDigger {
+
+	/** Number of other solutions to keep. */
+	private static final int MAX_OTHER_SOLUTIONS = 64;
+
+	/** The board to search on. */
+	private final CandidateBoard board = new CandidateBoard();
+
+	/** The policy to choose the cell for the next guess. */
+	private final IBranchingHeuristic branchingHeuristic = new MinimumRemainingValuesHeuristic();
+
+	/** The token to stop the checks, may be null. */
+	private final CancellationToken token;
+
+	/** The solution of the puzzle. */
+	private final byte[] solution = new byte[CandidateBoard.CELLS];
+
+	/** The cells still given. */
+	private final boolean[] given = new boolean[CandidateBoard.CELLS];
+
+	/** The hidden cells, bit 0..63 = cell 0..63. */
+	private long hiddenLow;
+
+	/** The hidden cells, bit 0..16 = cell 64..80. */
+	private long hiddenHigh;
+
+	/** The cells to check. */
+	private final byte[] checkCells = new byte[CandidateBoard.CELLS];
+
+	/** Number of entries in {@link #checkCells}. */
+	private int checkCount;
+
+	/** The cells of every other solution differing from the solution. */
+	private final long[] otherLow = new long[MAX_OTHER_SOLUTIONS];
+
+	/** See {@link #otherLow}, cells 64..80. */
+	private final long[] otherHigh = new long[MAX_OTHER_SOLUTIONS];
+
+	/** Number of other solutions kept. */
+	private int otherCount;
+
+	/** Where to keep the next other solution, replacing the oldest one. */
+	private int nextOther;
+
+	/** Set if the last check was stopped by the token. */
+	private boolean stopped;
+
+	/** The cell guessed on each level of the search. */
+	private final byte[] guessCell = new byte[CandidateBoard.CELLS];
+
+	/** The candidates not yet tried on each level of the search. */
+	private final int[] guessesLeft = new int[CandidateBoard.CELLS];
+
+	/** The trail mark before the guess of each level of the search. */
+	private final int[] guessMark = new int[CandidateBoard.CELLS];
+
+	/**
+	 * Create a digger.
+	 *
+	 * @param cancellationToken
+	 *            the token to stop the checks, null to never stop
+	 */
+	public HoleDigger(final CancellationToken cancellationToken) {
+		this.token = cancellationToken;
+	}
+
+	/**
+	 * Start with a puzzle: the answers of the grid are the solution, its
+	 * original digits are the givens. All hidden cells are checked.
+	 *
+	 * @param grid
+	 *            the puzzle
+	 * @return true if the puzzle has a unique solution
+	 */
+	public boolean start(final Grid grid) {
+
+		otherCount = 0;
+		nextOther = 0;
+		hiddenLow = 0;
+		hiddenHigh = 0;
+		checkCount = 0;
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			final GridSlot slot = grid.getSlot(CandidateBoard.ROW[cell],
+					CandidateBoard.COL[cell]);
+			solution[cell] = slot.getAnswer();
+			given[cell] = slot.isOriginalDigit() && slot.getShown() > 0;
+			if (!given[cell]) {
+				checkCells[checkCount++] = (byte) cell;
+			}
+		}
+		if (!isUniqueWithoutCheckCells()) {
+			return false;
+		}
+		for (int i = 0; i < checkCount; i++) {
+			hide(checkCells[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Hide some more givens, if the puzzle stays unique.
+	 *
+	 * @param positions
+	 *            the positions to hide
+	 * @return true if the positions are hidden now, false if the puzzle would
+	 *         not be unique any more or the check was stopped by the token
+	 */
+	public boolean tryHide(final Vector positions) {
+
+		checkCount = 0;
+		final Enumeration e = positions.elements();
+		while (e.hasMoreElements()) {
+			final Position pos = (Position) e.nextElement();
+			final int cell = pos.row * 9 + pos.col;
+			if (given[cell]) {
+				given[cell] = false;
+				checkCells[checkCount++] = (byte) cell;
+			}
+		}
+
+		if (isUniqueWithoutCheckCells()) {
+			for (int i = 0; i < checkCount; i++) {
+				hide(checkCells[i]);
+			}
+			return true;
+		}
+		for (int i = 0; i < checkCount; i++) {
+			given[checkCells[i]] = true;
+		}
+		return false;
+	}
+
+	/**
+	 * Mark a cell as hidden.
+	 *
+	 * @param cell
+	 *            the cell
+	 */
+	private void hide(final int cell) {
+
+		given[cell] = false;
+		if (cell < 64) {
+			hiddenLow |= 1L << cell;
+		} else {
+			hiddenHigh |= 1L << (cell - 64);
+		}
+	}
+
+	/**
+	 * Check the puzzle of the given cells: is there no solution with another
+	 * digit in one of the check cells?
+	 *
+	 * @return true if all check cells are forced
+	 */
+	private boolean isUniqueWithoutCheckCells() {
+
+		stopped = false;
+
+		// a known other solution, which only differs in hidden cells
+		long checkLow = hiddenLow;
+		long checkHigh = hiddenHigh;
+		for (int i = 0; i < checkCount; i++) {
+			final int cell = checkCells[i];
+			if (cell < 64) {
+				checkLow |= 1L << cell;
+			} else {
+				checkHigh |= 1L << (cell - 64);
+			}
+		}
+		for (int i = 0; i < otherCount; i++) {
+			if ((otherLow[i] & ~checkLow) == 0
+					&& (otherHigh[i] & ~checkHigh) == 0) {
+				return false;
+			}
+		}
+
+		// the givens and their singles, shared by all checks
+		board.clear();
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			if (given[cell]) {
+				board.place(cell, solution[cell]);
+			}
+		}
+		board.propagateSingles();
+		final int base = board.mark();
+
+		for (int i = 0; i < checkCount; i++) {
+			final int cell = checkCells[i];
+			if (board.getDigit(cell) != 0) {
+				// already forced by singles
+				continue;
+			}
+			board.eliminate(cell, 1 << (solution[cell] - 1));
+			if (board.propagateSingles() && findSolution()) {
+				keepOtherSolution();
+				return false;
+			}
+			board.undo(base);
+			if (stopped) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Search one solution of the board. If one is found, the board is left
+	 * filled with it.
+	 *
+	 * @return true if a solution was found
+	 */
+	private boolean findSolution() {
+
+		int level = 0;
+		boolean descend = true;
+
+		while (true) {
+
+			if (descend) {
+				descend = false;
+
+				if (token != null && !token.visitNode()) {
+					stopped = true;
+					return false;
+				}
+				if (board.getEmptyCount() == 0) {
+					return true;
+				}
+
+				// open a new level for the next cell
+				final int nextCell = branchingHeuristic.selectCell(board);
+				guessCell[level] = (byte) nextCell;
+				guessesLeft[level] = board.getCandidates(nextCell);
+				guessMark[level] = board.mark();
+				level++;
+			}
+
+			if (level == 0) {
+				// all guesses tried
+				return false;
+			}
+
+			// take back the last guess and everything following from it
+			final int top = level - 1;
+			board.undo(guessMark[top]);
+
+			final int guesses = guessesLeft[top];
+			if (guesses == 0) {
+				level--;
+				continue;
+			}
+			guessesLeft[top] = guesses & (guesses - 1);
+			board.place(guessCell[top], CandidateBoard.lowestDigit(guesses));
+			descend = board.propagateSingles();
+		}
+	}
+
+	/**
+	 * Keep the solution on the board as a known other solution.
+	 */
+	private void keepOtherSolution() {
+
+		long low = 0;
+		long high = 0;
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			if (board.getDigit(cell) != solution[cell]) {
+				if (cell < 64) {
+					low |= 1L << cell;
+				} else {
+					high |= 1L << (cell - 64);
+				}
+			}
+		}
+		otherLow[nextOther] = low;
+		otherHigh[nextOther] = high;
+		nextOther = (nextOther + 1) % MAX_OTHER_SOLUTIONS;
+		if (otherCount < MAX_OTHER_SOLUTIONS) {
+			otherCount++;
+		}
+	}
+}
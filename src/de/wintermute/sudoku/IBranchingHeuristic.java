@@ -0,0 +1,27 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Policy to choose the cell to guess on during back-tracking.
+ * 
+ * @version $Id$
+ */
+public interface IBranchingHeuristic {
+
+	/**
+	 * Select the next cell to guess on.
+	 * 
+	 * @param board
+	 *            the current board with at least one empty cell
+	 * @return the cell (0..80)
+	 */
+	public int selectCell(final CandidateBoard board);
+}
@@ -0,0 +1,30 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Gets the statistics of every search of a solver, see
+ * {@link Solver#setListener(ISolverListener)}.
+ *
+ * @version $Id$
+ */
+public interface ISolverListener {
+
+	/**
+	 * A search is finished, completely or stopped. Called in the searching
+	 * thread.
+	 *
+	 * @param solver
+	 *            the solver
+	 * @param statistics
+	 *            the statistics of the search, only valid during the call
+	 */
+	void searchFinished(Solver solver, SolverStatistics statistics);
+}
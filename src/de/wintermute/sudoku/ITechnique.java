@@ -0,0 +1,44 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * A logical solving technique, which places digits or eliminates candidates
+ * without guessing.
+ *
+ * @version $Id$
+ */
+public interface ITechnique {
+
+	/**
+	 * Apply the technique once to the whole board.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @return number of placed digits and removed candidates, 0 if the
+	 *         technique found nothing or -1 if the board can't be solved
+	 */
+	public int apply(final CandidateBoard board);
+
+	/**
+	 * Get the cost of the technique. Cheaper techniques are tried first, and
+	 * the cost of the hardest technique needed rates a puzzle.
+	 *
+	 * @return the cost (10 = one point of difficulty)
+	 */
+	public int getCost();
+
+	/**
+	 * Get the name of the technique.
+	 *
+	 * @return the name
+	 */
+	public String getName();
+}
@@ -0,0 +1,157 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Locked candidates in the intersection of a block with a row or column.
+ *
+ * Pointing: all candidates of a digit in a block lie in one row (column), so
+ * the digit can be removed from the rest of the row (column). Box-line
+ * reduction: all candidates of a digit in a row (column) lie in one block, so
+ * the digit can be removed from the rest of the block.
+ *
+ * @version $Id$
+ */
+public class IntersectionTechnique implements ITechnique {
+
+	/** Pointing instead of box-line reduction. */
+	private final boolean pointing;
+
+	/**
+	 * Create the technique.
+	 *
+	 * @param pointing
+	 *            true for pointing pairs/triples, false for box-line reduction
+	 */
+	public IntersectionTechnique(final boolean pointing) {
+		this.pointing = pointing;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#apply(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int apply(final CandidateBoard board) {
+
+		final int[] candidates = board.candidates;
+
+		// pointing: from the blocks (18..26) into the lines (0..17),
+		// box-line: from the lines into the blocks
+		final int firstUnit = pointing ? 18 : 0;
+		final int lastUnit = pointing ? 27 : 18;
+
+		for (int unit = firstUnit; unit < lastUnit; unit++) {
+			final byte[] cells = CandidateBoard.UNITS[unit];
+
+			for (int bit = 1; bit <= CandidateBoard.ALL_DIGITS; bit <<= 1) {
+
+				// the other units all candidates of the digit share
+				int row = -1;
+				int col = -1;
+				int box = -1;
+				int found = 0;
+				for (int i = 0; i < 9; i++) {
+					final int cell = cells[i];
+					if ((candidates[cell] & bit) == 0) {
+						continue;
+					}
+					if (found++ == 0) {
+						row = CandidateBoard.ROW[cell];
+						col = CandidateBoard.COL[cell];
+						box = CandidateBoard.BOX[cell];
+					} else {
+						if (row != CandidateBoard.ROW[cell]) {
+							row = -1;
+						}
+						if (col != CandidateBoard.COL[cell]) {
+							col = -1;
+						}
+						if (box != CandidateBoard.BOX[cell]) {
+							box = -1;
+						}
+					}
+				}
+				if (found < 2) {
+					// placed or a single
+					continue;
+				}
+
+				int removed = 0;
+				if (pointing) {
+					if (row >= 0) {
+						removed += eliminateOutside(board, row, unit, bit);
+					}
+					if (col >= 0) {
+						removed += eliminateOutside(board, 9 + col, unit, bit);
+					}
+				} else if (box >= 0) {
+					removed += eliminateOutside(board, 18 + box, unit, bit);
+				}
+				if (removed > 0) {
+					return removed;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Remove a digit from all cells of a unit, which are not in another unit.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @param unit
+	 *            the unit to remove the digit from
+	 * @param keep
+	 *            the unit whose cells keep the digit
+	 * @param bit
+	 *            the digit mask
+	 * @return number of removed candidates
+	 */
+	private static int eliminateOutside(final CandidateBoard board,
+			final int unit, final int keep, final int bit) {
+
+		int removed = 0;
+		final byte[] cells = CandidateBoard.UNITS[unit];
+		final byte[] kept = CandidateBoard.UNITS[keep];
+		for (int i = 0; i < 9; i++) {
+			boolean inKept = false;
+			for (int k = 0; k < 9; k++) {
+				if (kept[k] == cells[i]) {
+					inKept = true;
+					break;
+				}
+			}
+			if (!inKept && board.eliminate(cells[i], bit)) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getCost()
+	 */
+	public int getCost() {
+		return pointing ? 26 : 28;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getName()
+	 */
+	public String getName() {
+		return pointing ? "Pointing" : "Box-Line Reduction";
+	}
+}
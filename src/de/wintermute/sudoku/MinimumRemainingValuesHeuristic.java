@@ -0,0 +1,72 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Guess on the empty cell with the fewest candidates. If several cells have
+ * the same number of candidates, take the one with the most empty peers
+ * (constraint degree), as its guess eliminates the most candidates.
+ * 
+ * @version $Id$
+ */
+public class MinimumRemainingValuesHeuristic implements IBranchingHeuristic {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.wintermute.sudoku.IBranchingHeuristic#selectCell(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int selectCell(final CandidateBoard board) {
+
+		int bestCell = -1;
+		int bestCount = 10;
+		int bestDegree = -1;
+
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			if (board.getDigit(cell) != 0) {
+				continue;
+			}
+
+			final int count = CandidateBoard.count(board.getCandidates(cell));
+			if (count > bestCount) {
+				continue;
+			}
+
+			final int degree = getDegree(board, cell);
+			if (count < bestCount || degree > bestDegree) {
+				bestCell = cell;
+				bestCount = count;
+				bestDegree = degree;
+			}
+		}
+		return bestCell;
+	}
+
+	/**
+	 * Count the empty peers of a cell.
+	 * 
+	 * @param board
+	 *            the current board
+	 * @param cell
+	 *            the cell (0..80)
+	 * @return number of empty peers
+	 */
+	private static int getDegree(final CandidateBoard board, final int cell) {
+
+		int degree = 0;
+		final byte[] peers = CandidateBoard.PEERS[cell];
+		for (int i = 0; i < peers.length; i++) {
+			if (board.getDigit(peers[i]) == 0) {
+				degree++;
+			}
+		}
+		return degree;
+	}
+}
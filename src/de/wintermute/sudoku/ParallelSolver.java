@@ -0,0 +1,317 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Vector;
+
+/**
+ * Solve a puzzle with several threads for hard and multi-solution puzzles on
+ * multi core hosts.
+ * 
+ * The search tree is split at its top levels into independent subtrees. Each
+ * subtree is described by the guesses leading to it. The worker threads take
+ * the next open subtree from a shared queue, so a thread finishing early just
+ * takes more work. All workers stop as soon as the solution limit is reached
+ * or the task is aborted.
+ * 
+ * Each worker uses the Single/HiddenSingle-Strategy and guessing of the
+ * GridSolver on its own CandidateBoard, and counts its nodes on its own child
+ * of the solver's {@link CancellationToken}.
+ * 
+ * @version $Id$
+ */
+public class ParallelSolver extends Solver {
+
+	/**
+	 * Split until there are this number of subtrees per thread, so the work is
+	 * spread evenly even if some subtrees are much bigger than others.
+	 */
+	private static final int SUBTREES_PER_THREAD = 8;
+
+	/**
+	 * Never split deeper than this number of guesses.
+	 */
+	private static final int MAX_SPLIT_DEPTH = 6;
+
+	/**
+	 * Number of threads to search with.
+	 */
+	private final int numberOfThreads;
+
+	/**
+	 * The policy to choose the cell for the next guess.
+	 */
+	private final IBranchingHeuristic branchingHeuristic = new MinimumRemainingValuesHeuristic();
+
+	/**
+	 * The open subtrees: int[] of guesses, each encoded as cell * 10 + digit.
+	 */
+	private final Vector subtrees = new Vector();
+
+	/**
+	 * Index of the next subtree to take.
+	 */
+	private int nextSubtree;
+
+	/**
+	 * Set when the solution limit is reached, to stop all workers.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Create a parallel solver.
+	 * 
+	 * @param solverTask
+	 *            the task to watch
+	 * @param maxSolutions
+	 *            the number of solutions to stop the search at
+	 * @param threads
+	 *            the number of threads to search with
+	 */
+	public ParallelSolver(final AbortableTask solverTask,
+			final int maxSolutions, final int threads) {
+		super(solverTask, maxSolutions);
+		numberOfThreads = threads < 1 ? 1 : threads;
+	}
+
+	/**
+	 * Search the solutions of the given grid.
+	 * 
+	 * @return Vector with the first solution(s).
+	 */
+	public final Vector searchSolutions(final Grid newGrid) {
+
+		// important: store a copy !
+		// because we manipulating shown digits
+		this.grid = newGrid.clone();
+		resetSolutions();
+		subtrees.removeAllElements();
+		nextSubtree = 0;
+		stopped = false;
+
+		if (!board.load(grid) || !GridSolver.solveWithSingleStrategy(board)) {
+			return finishSearch();
+		}
+
+		startSearchPhase();
+		split();
+
+		// the calling thread is one of the workers
+		final Worker[] workers = new Worker[numberOfThreads];
+		final Thread[] threads = new Thread[numberOfThreads - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(workers[i + 1]);
+			threads[i].start();
+		}
+		workers[0].run();
+
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// go on waiting for the others
+			}
+		}
+		for (int i = 0; i < workers.length; i++) {
+			statistics.add(workers[i].counted);
+		}
+
+		return finishSearch();
+	}
+
+	/**
+	 * Split the search tree level by level until there are enough subtrees.
+	 * Solutions found on the way are registered directly.
+	 */
+	private void split() {
+
+		subtrees.addElement(new int[0]);
+
+		for (int level = 0; level < MAX_SPLIT_DEPTH
+				&& subtrees.size() < numberOfThreads * SUBTREES_PER_THREAD
+				&& !subtrees.isEmpty(); level++) {
+
+			final Vector parents = new Vector(subtrees.size());
+			for (int i = 0; i < subtrees.size(); i++) {
+				parents.addElement(subtrees.elementAt(i));
+			}
+			subtrees.removeAllElements();
+
+			for (int i = 0; i < parents.size(); i++) {
+				final int[] path = (int[]) parents.elementAt(i);
+				final int mark = board.mark();
+				if (replay(board, path)) {
+					if (board.getEmptyCount() == 0) {
+						foundSolution(board, (short) (path.length + 1));
+					} else {
+						final int cell = branchingHeuristic.selectCell(board);
+						int guesses = board.getCandidates(cell);
+						while (guesses != 0) {
+							final byte digit = CandidateBoard.lowestDigit(guesses);
+							guesses &= guesses - 1;
+
+							final int[] child = new int[path.length + 1];
+							System.arraycopy(path, 0, child, 0, path.length);
+							child[path.length] = cell * 10 + digit;
+							subtrees.addElement(child);
+						}
+					}
+				}
+				board.undo(mark);
+			}
+		}
+	}
+
+	/**
+	 * Place the guesses of a subtree and propagate after each of them.
+	 * 
+	 * @param current
+	 *            the board to work on
+	 * @param path
+	 *            the guesses
+	 * @return false if the subtree has no solution
+	 */
+	private static boolean replay(final CandidateBoard current, final int[] path) {
+
+		for (int i = 0; i < path.length; i++) {
+			final int cell = path[i] / 10;
+			final int digit = path[i] % 10;
+			if ((current.getCandidates(cell) & (1 << (digit - 1))) == 0) {
+				return false;
+			}
+			current.place(cell, digit);
+			if (!GridSolver.solveWithSingleStrategy(current)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Take the next open subtree.
+	 * 
+	 * @return the guesses of the subtree or null if all are taken
+	 */
+	private synchronized int[] takeSubtree() {
+
+		if (nextSubtree >= subtrees.size()) {
+			return null;
+		}
+		return (int[]) subtrees.elementAt(nextSubtree++);
+	}
+
+	/**
+	 * Register a solution found by any thread.
+	 * 
+	 * @param solved
+	 *            the completely filled board
+	 * @param depth
+	 *            the back-tracking depth
+	 */
+	private synchronized void foundSolution(final CandidateBoard solved,
+			final short depth) {
+
+		if (!isSolutionLimitReached()) {
+			addSolution(solved.digits, depth);
+		}
+		if (isSolutionLimitReached()) {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * A worker searching subtrees until none is left.
+	 */
+	private class Worker implements Runnable {
+
+		/**
+		 * The own board of this worker.
+		 */
+		private final CandidateBoard local = new CandidateBoard();
+
+		/**
+		 * The nodes visited by this worker, added to the statistics of the
+		 * search at the end.
+		 */
+		private final SolverStatistics counted = new SolverStatistics();
+
+		/**
+		 * The own token of this worker, sharing the budgets of the solver's
+		 * token, null if the solver has none.
+		 */
+		private final CancellationToken budget = token == null ? null
+				: new CancellationToken(token);
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+
+			int[] path = takeSubtree();
+			while (path != null && !isStopped()) {
+				local.copyFrom(board);
+				if (replay(local, path)) {
+					search((short) (path.length + 1));
+				}
+				path = takeSubtree();
+			}
+			if (budget != null) {
+				budget.flush();
+			}
+		}
+
+		/**
+		 * Check if the search should stop.
+		 * 
+		 * @return true if stopped, aborted or out of budget
+		 */
+		private boolean isStopped() {
+			return stopped || (budget != null && !budget.visitNode());
+		}
+
+		/**
+		 * Recursive call to solve the subtree via back tracking.
+		 * 
+		 * @param depth
+		 *            the back-tracking depth
+		 */
+		private void search(final short depth) {
+
+			if (isStopped()) {
+				return;
+			}
+			counted.visitNode(depth);
+
+			if (local.getEmptyCount() == 0) {
+				foundSolution(local, depth);
+				return;
+			}
+
+			final int cell = branchingHeuristic.selectCell(local);
+			int guesses = local.getCandidates(cell);
+			final int mark = local.mark();
+			while (guesses != 0) {
+				final byte digit = CandidateBoard.lowestDigit(guesses);
+				guesses &= guesses - 1;
+
+				local.place(cell, digit);
+				if (GridSolver.solveWithSingleStrategy(local)) {
+					search((short) (depth + 1));
+				}
+				local.undo(mark);
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Ready puzzles for every level, so a new game can start at once.
+ *
+ * The pool is refilled in the background by a {@link CreatorTask} with low
+ * priority, one puzzle at a time for the level with the fewest puzzles, until
+ * every level has {@link #CAPACITY} puzzles. It is saved in the
+ * {@link GridStore} after every change, so it survives a restart.
+ *
+ * @version $Id$
+ */
+public class PuzzlePool {
+
+	/** Number of puzzles kept per level. */
+	public static final int CAPACITY = 3;
+
+	/** The midlet, to create the background task. */
+	private final SudokuMidlet midlet;
+
+	/** The state holder with the preferences for creation to use. */
+	private final SudokuStateControl preferences;
+
+	/** The ready puzzles (Grid) of every level, the oldest first. */
+	private final Vector[] puzzles;
+
+	/** The background creation, null if none is running. */
+	private CreatorTask filler;
+
+	/** Number of threads of the background creation. */
+	private int numberOfWorkers = 1;
+
+	/**
+	 * Create an empty pool.
+	 *
+	 * @param theMidlet
+	 *            the midlet
+	 * @param theStateHolder
+	 *            the state holder with the preferences for creation to use
+	 * @param levels
+	 *            the number of levels
+	 */
+	public PuzzlePool(final SudokuMidlet theMidlet,
+			final SudokuStateControl theStateHolder, final int levels) {
+
+		midlet = theMidlet;
+		preferences = theStateHolder;
+		puzzles = new Vector[levels];
+		for (int i = 0; i < levels; i++) {
+			puzzles[i] = new Vector(CAPACITY);
+		}
+	}
+
+	/**
+	 * Set the number of threads of the background creation.
+	 *
+	 * @param workers
+	 *            the number of threads
+	 */
+	public void setNumberOfWorkers(final int workers) {
+		this.numberOfWorkers = workers;
+	}
+
+	/**
+	 * Take a ready puzzle.
+	 *
+	 * @param level
+	 *            the index of the level
+	 * @return the puzzle or null if there is none of this level
+	 */
+	public synchronized Grid take(final short level) {
+
+		if (level < 0 || level >= puzzles.length || puzzles[level].isEmpty()) {
+			return null;
+		}
+		final Grid grid = (Grid) puzzles[level].firstElement();
+		puzzles[level].removeElementAt(0);
+		save();
+		return grid;
+	}
+
+	/**
+	 * Start the background creation for the level with the fewest puzzles,
+	 * unless it is running already or the pool is full.
+	 */
+	public synchronized void refill() {
+
+		if (filler != null) {
+			return;
+		}
+
+		short level = -1;
+		for (short i = 0; i < puzzles.length; i++) {
+			if (puzzles[i].size() < CAPACITY
+					&& (level < 0 || puzzles[i].size() < puzzles[level].size())) {
+				level = i;
+			}
+		}
+		if (level < 0) {
+			// full
+			return;
+		}
+
+		filler = new CreatorTask(midlet, preferences);
+		filler.setNumberOfWorkers(numberOfWorkers);
+		filler.createGameForPool(level, this);
+	}
+
+	/**
+	 * Stop the background creation, e.g. while the player waits for a
+	 * creation or the midlet is paused. The puzzle in creation is lost.
+	 */
+	public synchronized void stop() {
+
+		if (filler != null) {
+			filler.abort();
+			filler = null;
+		}
+	}
+
+	/**
+	 * Callback from the background creation: a puzzle is ready. Creates the
+	 * next one, if the pool isn't full yet.
+	 *
+	 * @param task
+	 *            the creation
+	 * @param level
+	 *            the index of the level
+	 * @param grid
+	 *            the puzzle
+	 */
+	synchronized void puzzleCreated(final CreatorTask task, final short level,
+			final Grid grid) {
+
+		if (task != filler) {
+			// stopped in the meantime
+			return;
+		}
+		filler = null;
+		if (puzzles[level].size() < CAPACITY) {
+			puzzles[level].addElement(grid);
+			save();
+		}
+		refill();
+	}
+
+	/**
+	 * Read the pool saved before.
+	 */
+	public synchronized void load() {
+
+		final byte[] byteArray = GridStore.getPuzzlePool();
+		if (byteArray == null) {
+			return;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new ByteArrayInputStream(byteArray));
+			if (in.readShort() != puzzles.length) {
+				// written with other levels
+				return;
+			}
+			for (int level = 0; level < puzzles.length; level++) {
+				puzzles[level].removeAllElements();
+				final int count = in.readByte();
+				for (int i = 0; i < count; i++) {
+					final byte[] gridBytes = new byte[in.readShort()];
+					in.readFully(gridBytes);
+					if (puzzles[level].size() < CAPACITY) {
+						puzzles[level].addElement(new Grid(gridBytes));
+					}
+				}
+			}
+		} catch (IOException e) {
+			// broken, start with an empty pool
+			for (int level = 0; level < puzzles.length; level++) {
+				puzzles[level].removeAllElements();
+			}
+		}
+	}
+
+	/**
+	 * Save the pool.
+	 */
+	private void save() {
+
+		try {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(baos);
+
+			out.writeShort(puzzles.length);
+			for (int level = 0; level < puzzles.length; level++) {
+				out.writeByte(puzzles[level].size());
+				for (int i = 0; i < puzzles[level].size(); i++) {
+					final byte[] gridBytes = ((Grid) puzzles[level]
+							.elementAt(i)).toByteArray();
+					out.writeShort(gridBytes.length);
+					out.write(gridBytes);
+				}
+			}
+
+			GridStore.savePuzzlePool(baos.toByteArray());
+		} catch (IOException e) {
+			// keep the pool in memory only
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Singles: a cell with only one candidate left (naked single) or a digit with
+ * only one cell left in a row, column or block (hidden single).
+ *
+ * @version $Id$
+ */
+public class SingleTechnique implements ITechnique {
+
+	/** Search hidden instead of naked singles. */
+	private final boolean hidden;
+
+	/**
+	 * Create the technique.
+	 *
+	 * @param hidden
+	 *            true for hidden singles, false for naked singles
+	 */
+	public SingleTechnique(final boolean hidden) {
+		this.hidden = hidden;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#apply(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int apply(final CandidateBoard board) {
+
+		return hidden ? applyHidden(board) : applyNaked(board);
+	}
+
+	/**
+	 * Place all naked singles.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @return number of placed digits or -1 if a cell has no candidate
+	 */
+	private static int applyNaked(final CandidateBoard board) {
+
+		int found = 0;
+		for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+			if (board.digits[cell] != 0) {
+				continue;
+			}
+			final int mask = board.candidates[cell];
+			if (mask == 0) {
+				return -1;
+			}
+			if ((mask & (mask - 1)) == 0) {
+				board.place(cell, CandidateBoard.lowestDigit(mask));
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Place all hidden singles.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @return number of placed digits or -1 if a digit has no cell left
+	 */
+	private static int applyHidden(final CandidateBoard board) {
+
+		int found = 0;
+		for (int unit = 0; unit < 27; unit++) {
+			final int placed = board.placeHiddenSingles(unit);
+			if (placed < 0) {
+				return -1;
+			}
+			found += placed;
+		}
+		return found;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getCost()
+	 */
+	public int getCost() {
+		return hidden ? 12 : 23;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getName()
+	 */
+	public String getName() {
+		return hidden ? "Hidden Single" : "Naked Single";
+	}
+}
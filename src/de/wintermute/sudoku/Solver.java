@@ -10,7 +10,7 @@
 
 package de.wintermute.sudoku;
 
-import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -27,6 +27,12 @@ public abstract class Solver {
 	/** the task in progress (creator/solver) */
 	protected AbortableTask task;
 
+	/**
+	 * The token to stop the search, checked at every node, null to never
+	 * stop.
+	 */
+	protected CancellationToken token;
+
 	/**
 	 * Store the current grid state during solving.
 	 */
@@ -37,16 +43,84 @@ public abstract class Solver {
 	 */
 	protected Vector possibleSolutions = new Vector();
 
-	protected Position[] emptyPositionsForCompare;
+	/**
+	 * The candidate state the search is working on.
+	 */
+	protected final CandidateBoard board = new CandidateBoard();
+
+	/**
+	 * Index of the found solutions by their encoding, to detect a solution
+	 * found twice without comparing every stored grid.
+	 */
+	private final Hashtable solutionIndex = new Hashtable();
+
+	/**
+	 * Number of different solutions found so far.
+	 */
+	protected int numberOfSolutions;
+
+	/**
+	 * Stop the search when this number of solutions is found.
+	 */
+	protected int maxNumberOfSolutionsToSearch;
+
+	/**
+	 * Only count the solutions, don't store them as grids.
+	 */
+	private boolean countOnly = false;
+
+	/**
+	 * The statistics of the last (or current) search.
+	 */
+	protected final SolverStatistics statistics = new SolverStatistics();
+
+	/**
+	 * Gets the statistics after every search, null for none.
+	 */
+	private ISolverListener listener = null;
 
 	/**
 	 * Create a new solver with the task to abort.
 	 * 
 	 * @param solverTask
+	 * @param maxSolutions
+	 *            the number of solutions to stop the search at
 	 */
-	protected Solver(final AbortableTask solverTask) {
+	protected Solver(final AbortableTask solverTask, final int maxSolutions) {
 		super();
 		this.task = solverTask;
+		this.token = solverTask != null ? solverTask.getToken() : null;
+		this.maxNumberOfSolutionsToSearch = maxSolutions;
+	}
+
+	/**
+	 * Set the token to stop the search, e.g. with a node budget or a deadline
+	 * instead of a task.
+	 * 
+	 * @param cancellationToken
+	 *            the token or null to never stop
+	 */
+	public void setCancellationToken(final CancellationToken cancellationToken) {
+		this.token = cancellationToken;
+	}
+
+	/**
+	 * Set the listener to get the statistics after every search.
+	 * 
+	 * @param solverListener
+	 *            the listener or null for none
+	 */
+	public void setListener(final ISolverListener solverListener) {
+		this.listener = solverListener;
+	}
+
+	/**
+	 * Get the statistics of the last search.
+	 * 
+	 * @return the statistics, changed by the next search
+	 */
+	public SolverStatistics getStatistics() {
+		return statistics;
 	}
 
 	/**
@@ -56,34 +130,140 @@ public abstract class Solver {
 	 */
 	public abstract Vector searchSolutions(final Grid newGrid);
 
+	/**
+	 * Count the solutions of the grid up to the limit. The solutions are not
+	 * stored as grids, so this is cheap even for puzzles with many solutions.
+	 * 
+	 * @param newGrid
+	 *            the grid to check
+	 * @param limit
+	 *            stop counting at this number of solutions
+	 * @return the number of solutions found (at most limit)
+	 */
+	public final int countSolutions(final Grid newGrid, final int limit) {
+
+		final int oldMax = maxNumberOfSolutionsToSearch;
+		maxNumberOfSolutionsToSearch = limit;
+		countOnly = true;
+		try {
+			searchSolutionsToCount(newGrid);
+		} finally {
+			countOnly = false;
+			maxNumberOfSolutionsToSearch = oldMax;
+		}
+		return numberOfSolutions;
+	}
+
+	/**
+	 * Search the solutions of a grid for {@link #countSolutions(Grid, int)}.
+	 * The answers of the grid are never taken as a solution here, it may be a
+	 * puzzle without answers.
+	 * 
+	 * @param newGrid
+	 *            the grid to check
+	 * @return the solutions
+	 */
+	protected Vector searchSolutionsToCount(final Grid newGrid) {
+		return searchSolutions(newGrid);
+	}
+
+	/**
+	 * Forget the solutions of the last search and start its statistics.
+	 */
+	protected final void resetSolutions() {
+
+		possibleSolutions.removeAllElements();
+		solutionIndex.clear();
+		numberOfSolutions = 0;
+		statistics.reset(board);
+	}
+
+	/**
+	 * The setup of the search is done, record the search phase from now on.
+	 */
+	protected final void startSearchPhase() {
+		statistics.startSearch();
+	}
+
+	/**
+	 * The search is done (or stopped): complete the statistics and pass them
+	 * to the listener.
+	 * 
+	 * @return the solutions
+	 */
+	protected final Vector finishSearch() {
+
+		statistics.finish(board);
+		if (listener != null) {
+			listener.searchFinished(this, statistics);
+		}
+		return possibleSolutions;
+	}
+
+	/**
+	 * Check if enough solutions are found to stop the search.
+	 * 
+	 * @return true if the search should stop
+	 */
+	protected final boolean isSolutionLimitReached() {
+		return numberOfSolutions >= maxNumberOfSolutionsToSearch;
+	}
+
+	/**
+	 * Encode the 81 digits of a solution into a String of 27 chars (3 digits
+	 * per char).
+	 * 
+	 * @param digits
+	 *            the digits of all cells
+	 * @return the key for the solution index (or any other index by digits)
+	 */
+	static String encode(final byte[] digits) {
+
+		final char[] key = new char[27];
+		for (int i = 0, cell = 0; i < key.length; i++, cell += 3) {
+			key[i] = (char) (digits[cell] * 100 + digits[cell + 1] * 10 + digits[cell + 2]);
+		}
+		return new String(key);
+	}
+
 	/**
 	 * Check if the solution is a new one and if yes, add this solution to the
 	 * list.
 	 * 
-	 * @param newSolution
-	 *            the solution to check
+	 * @param digits
+	 *            the digits of all 81 cells of the solution
 	 * @param depth
 	 *            the depth of back-tracking
 	 * @return true if this solution is new
 	 */
-	protected final boolean addSolution(final Grid newSolution,
-			final short depth) {
-
-		final Enumeration solutions = possibleSolutions.elements();
-		while (solutions.hasMoreElements()) {
-			final Grid boardToCompare = (Grid) solutions.nextElement();
+	protected final boolean addSolution(final byte[] digits, final short depth) {
 
-			if (newSolution.equalShown(boardToCompare,
-					this.emptyPositionsForCompare)) {
-				// already got this solution
-				boardToCompare.setBackTrackingDepth(depth);
-				return false;
+		final String key = encode(digits);
+		final Object found = solutionIndex.get(key);
+		if (found != null) {
+			// already got this solution
+			if (found instanceof Grid) {
+				((Grid) found).setBackTrackingDepth(depth);
 			}
+			return false;
 		}
 
 		// NEW SOLUTION
-		newSolution.setBackTrackingDepth(depth);
-		possibleSolutions.addElement(newSolution.clone());
+		numberOfSolutions++;
+		if (countOnly) {
+			solutionIndex.put(key, key);
+		} else {
+			final Grid newSolution = grid.clone();
+			for (byte row = 0; row < 9; row++) {
+				for (byte col = 0; col < 9; col++) {
+					newSolution.getSlot(row, col).setShown(
+							digits[row * 9 + col]);
+				}
+			}
+			newSolution.setBackTrackingDepth(depth);
+			possibleSolutions.addElement(newSolution);
+			solutionIndex.put(key, newSolution);
+		}
 		return true;
 	}
 }
@@ -0,0 +1,268 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Statistics of a search: what the solver did and how long it took.
+ *
+ * The solver counts while searching with plain field increments, so the
+ * statistics are always on. The depth of a node is the number of open
+ * choices (guesses, rows) above it. The times are measured in ms for two
+ * phases: the setup (loading the givens, first singles) and the search.
+ *
+ * The {@link ParallelSolver} only records the times, its threads don't
+ * count.
+ *
+ * @version $Id$
+ */
+public class SolverStatistics {
+
+	/** The deepest depth recorded in the histogram. */
+	public static final int MAX_DEPTH = CandidateBoard.CELLS;
+
+	/** Nodes visited. */
+	long nodes;
+
+	/** Guesses (digits or rows tried). */
+	long guesses;
+
+	/** Back tracks: choices left after all their alternatives were tried. */
+	long backtracks;
+
+	/** Naked singles placed. */
+	long nakedSingles;
+
+	/** Hidden singles placed. */
+	long hiddenSingles;
+
+	/** Number of nodes per depth. */
+	final long[] depthHistogram = new long[MAX_DEPTH + 1];
+
+	/** Time of the setup phase in ms. */
+	private long setupTime;
+
+	/** Time of the search phase in ms. */
+	private long searchTime;
+
+	/** Start of the current phase. */
+	private long phaseStart;
+
+	/** Set when the search phase started. */
+	private boolean searching;
+
+	/**
+	 * Start recording a new search, the setup phase begins.
+	 *
+	 * @param board
+	 *            the board of the solver, to count the singles
+	 */
+	void reset(final CandidateBoard board) {
+
+		nodes = 0;
+		guesses = 0;
+		backtracks = 0;
+		for (int i = 0; i <= MAX_DEPTH; i++) {
+			depthHistogram[i] = 0;
+		}
+		setupTime = 0;
+		searchTime = 0;
+		searching = false;
+
+		// the board counts all singles ever placed
+		nakedSingles = -board.nakedSingles;
+		hiddenSingles = -board.hiddenSingles;
+
+		phaseStart = System.currentTimeMillis();
+	}
+
+	/**
+	 * The setup is done, the search phase begins.
+	 */
+	void startSearch() {
+
+		final long now = System.currentTimeMillis();
+		setupTime = now - phaseStart;
+		phaseStart = now;
+		searching = true;
+	}
+
+	/**
+	 * The search is done.
+	 *
+	 * @param board
+	 *            the board of the solver, to count the singles
+	 */
+	void finish(final CandidateBoard board) {
+
+		final long time = System.currentTimeMillis() - phaseStart;
+		if (searching) {
+			searchTime = time;
+		} else {
+			setupTime = time;
+		}
+		nakedSingles += board.nakedSingles;
+		hiddenSingles += board.hiddenSingles;
+	}
+
+	/**
+	 * Count a visited node.
+	 *
+	 * @param depth
+	 *            the number of open choices
+	 */
+	final void visitNode(final int depth) {
+
+		nodes++;
+		depthHistogram[depth]++;
+	}
+
+	/**
+	 * Add the counters and times of another search, e.g. to sum up a batch.
+	 *
+	 * @param other
+	 *            the statistics to add
+	 */
+	public void add(final SolverStatistics other) {
+
+		nodes += other.nodes;
+		guesses += other.guesses;
+		backtracks += other.backtracks;
+		nakedSingles += other.nakedSingles;
+		hiddenSingles += other.hiddenSingles;
+		for (int i = 0; i <= MAX_DEPTH; i++) {
+			depthHistogram[i] += other.depthHistogram[i];
+		}
+		setupTime += other.setupTime;
+		searchTime += other.searchTime;
+	}
+
+	/**
+	 * Get the number of visited nodes.
+	 *
+	 * @return the nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Get the number of guesses.
+	 *
+	 * @return the guesses
+	 */
+	public long getGuesses() {
+		return guesses;
+	}
+
+	/**
+	 * Get the number of back tracks.
+	 *
+	 * @return the choices left after all their alternatives were tried
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * Get the number of naked singles placed.
+	 *
+	 * @return the naked singles
+	 */
+	public long getNakedSingles() {
+		return nakedSingles;
+	}
+
+	/**
+	 * Get the number of hidden singles placed.
+	 *
+	 * @return the hidden singles
+	 */
+	public long getHiddenSingles() {
+		return hiddenSingles;
+	}
+
+	/**
+	 * Get the number of nodes visited at a depth.
+	 *
+	 * @param depth
+	 *            the depth (0..{@link #MAX_DEPTH})
+	 * @return the nodes
+	 */
+	public long getNodesAtDepth(final int depth) {
+		return depthHistogram[depth];
+	}
+
+	/**
+	 * Get the deepest depth of a visited node.
+	 *
+	 * @return the depth or -1 if no node was visited
+	 */
+	public int getMaxDepth() {
+
+		for (int depth = MAX_DEPTH; depth >= 0; depth--) {
+			if (depthHistogram[depth] > 0) {
+				return depth;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the average depth of the visited nodes, in hundredths (no floating
+	 * point on the device).
+	 *
+	 * @return the average depth * 100
+	 */
+	public long getAverageDepth100() {
+
+		if (nodes == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+			sum += depth * depthHistogram[depth];
+		}
+		return sum * 100 / nodes;
+	}
+
+	/**
+	 * Get the time of the setup phase.
+	 *
+	 * @return the time in ms
+	 */
+	public long getSetupTime() {
+		return setupTime;
+	}
+
+	/**
+	 * Get the time of the search phase.
+	 *
+	 * @return the time in ms
+	 */
+	public long getSearchTime() {
+		return searchTime;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+
+		final long average = getAverageDepth100();
+		return "nodes=" + nodes + " guesses=" + guesses + " backtracks="
+				+ backtracks + " nakedSingles=" + nakedSingles
+				+ " hiddenSingles=" + hiddenSingles + " maxDepth="
+				+ getMaxDepth() + " avgDepth=" + (average / 100) + "."
+				+ (average % 100 < 10 ? "0" : "") + (average % 100)
+				+ " setupMs=" + setupTime + " searchMs=" + searchTime;
+	}
+}
@@ -80,11 +80,11 @@ public class SolverTask extends AbortableTask {
 								.promoteProgress(Dict
 										.getString("searchSol"));
 
-						// use brute force to solve puzzle as the Grid Solver is
-						// not working for user created
+						// use exact cover search to solve puzzle as the Grid
+						// Solver is not working for user created
 						// since they might be not solvable at all and the grid
 						// solver expects one solution already
-						final Solver solver = new BruteForceSolver(
+						final Solver solver = new DancingLinksSolver(
 								SolverTask.this, false);
 
 						final Vector solutions = solver.searchSolutions(grid);
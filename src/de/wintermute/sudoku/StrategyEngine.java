@@ -0,0 +1,142 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Pipeline of logical techniques, ordered by cost.
+ *
+ * Every step applies the cheapest technique that finds something. After each
+ * step the pipeline starts again with the cheapest technique, so the advanced
+ * techniques only run when the simple ones are stuck. Propagating this way
+ * before a guess leaves far fewer guesses to the back-tracking.
+ *
+ * An engine keeps scratch state in its techniques, so every thread needs its
+ * own engine.
+ *
+ * @version $Id$
+ */
+public class StrategyEngine {
+
+	/** Result of {@link #step(CandidateBoard)}: no technique found anything. */
+	public static final int STUCK = -1;
+
+	/** Result of {@link #step(CandidateBoard)}: the board can't be solved. */
+	public static final int CONTRADICTION = -2;
+
+	/** The techniques, cheapest first. */
+	private ITechnique[] techniques = new ITechnique[0];
+
+	/**
+	 * Create an engine with all standard techniques: singles, pointing,
+	 * box-line reduction, naked and hidden pairs, triples and quads, X-Wing,
+	 * Swordfish and XY-Wing.
+	 */
+	public StrategyEngine() {
+
+		addTechnique(new SingleTechnique(true));
+		addTechnique(new SingleTechnique(false));
+		addTechnique(new IntersectionTechnique(true));
+		addTechnique(new IntersectionTechnique(false));
+		for (int size = 2; size <= 4; size++) {
+			addTechnique(new SubsetTechnique(size, false));
+			addTechnique(new SubsetTechnique(size, true));
+		}
+		addTechnique(new FishTechnique(2));
+		addTechnique(new FishTechnique(3));
+		addTechnique(new XYWingTechnique());
+	}
+
+	/**
+	 * Create an engine with the given techniques.
+	 *
+	 * @param newTechniques
+	 *            the techniques in any order
+	 */
+	public StrategyEngine(final ITechnique[] newTechniques) {
+
+		for (int i = 0; i < newTechniques.length; i++) {
+			addTechnique(newTechniques[i]);
+		}
+	}
+
+	/**
+	 * Add a technique. It is sorted in by its cost.
+	 *
+	 * @param technique
+	 *            the technique to add
+	 */
+	public void addTechnique(final ITechnique technique) {
+
+		final ITechnique[] sorted = new ITechnique[techniques.length + 1];
+		int pos = 0;
+		while (pos < techniques.length
+				&& techniques[pos].getCost() <= technique.getCost()) {
+			sorted[pos] = techniques[pos];
+			pos++;
+		}
+		sorted[pos] = technique;
+		System.arraycopy(techniques, pos, sorted, pos + 1, techniques.length
+				- pos);
+		techniques = sorted;
+	}
+
+	/**
+	 * Get the techniques, cheapest first.
+	 *
+	 * @return the techniques (don't change)
+	 */
+	public ITechnique[] getTechniques() {
+		return techniques;
+	}
+
+	/**
+	 * Apply the cheapest technique that finds something.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @return index of the applied technique, {@link #STUCK} or
+	 *         {@link #CONTRADICTION}
+	 */
+	public int step(final CandidateBoard board) {
+
+		for (int i = 0; i < techniques.length; i++) {
+			final int found = techniques[i].apply(board);
+			if (found < 0) {
+				return CONTRADICTION;
+			}
+			if (found > 0) {
+				return i;
+			}
+		}
+		return STUCK;
+	}
+
+	/**
+	 * Apply the techniques until the board is solved or no technique finds
+	 * anything anymore.
+	 *
+	 * @param board
+	 *            the board to change
+	 * @return false if the board can't be solved
+	 */
+	public boolean propagate(final CandidateBoard board) {
+
+		while (board.getEmptyCount() > 0) {
+			final int result = step(board);
+			if (result == CONTRADICTION) {
+				return false;
+			}
+			if (result == STUCK) {
+				break;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Naked and hidden pairs, triples and quads.
+ *
+ * Naked: n cells of a unit share only n candidates, so these digits can be
+ * removed from the other cells of the unit. Hidden: n digits of a unit fit
+ * only into the same n cells, so all other candidates can be removed from
+ * these cells.
+ *
+ * Both are the same search on different masks: for naked subsets the mask of
+ * every position of the unit holds its digits, for hidden subsets the mask of
+ * every digit holds its positions.
+ *
+ * @version $Id$
+ */
+public class SubsetTechnique implements ITechnique {
+
+	/** Names by size. */
+	private static final String[] SIZE_NAMES = { "", "", "Pair", "Triple",
+			"Quad" };
+
+	/** Costs of naked subsets by size. */
+	private static final int[] NAKED_COSTS = { 0, 0, 30, 36, 50 };
+
+	/** Costs of hidden subsets by size. */
+	private static final int[] HIDDEN_COSTS = { 0, 0, 34, 40, 54 };
+
+	/** Number of cells and digits in the subset (2..4). */
+	private final int size;
+
+	/** Search hidden instead of naked subsets. */
+	private final boolean hidden;
+
+	/** Mask of every position (naked) or digit (hidden) of the unit. */
+	private final int[] masks = new int[9];
+
+	/** Indices of the masks, which may be part of a subset. */
+	private final int[] indices = new int[9];
+
+	/**
+	 * Create the technique.
+	 *
+	 * @param size
+	 *            2 for pairs, 3 for triples, 4 for quads
+	 * @param hidden
+	 *            true for hidden, false for naked subsets
+	 */
+	public SubsetTechnique(final int size, final boolean hidden) {
+		this.size = size;
+		this.hidden = hidden;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#apply(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int apply(final CandidateBoard board) {
+
+		int removed = 0;
+		for (int unit = 0; unit < 27; unit++) {
+			final byte[] cells = CandidateBoard.UNITS[unit];
+
+			// fill the masks
+			for (int i = 0; i < 9; i++) {
+				masks[i] = 0;
+			}
+			for (int i = 0; i < 9; i++) {
+				final int candidates = board.candidates[cells[i]];
+				if (hidden) {
+					for (int rest = candidates; rest != 0; rest &= rest - 1) {
+						masks[CandidateBoard.lowestDigit(rest) - 1] |= 1 << i;
+					}
+				} else {
+					masks[i] = candidates;
+				}
+			}
+
+			// only masks with at most size bits can be part of a subset
+			int open = 0;
+			int fitting = 0;
+			for (int i = 0; i < 9; i++) {
+				if (masks[i] != 0) {
+					open++;
+					if (CandidateBoard.count(masks[i]) <= size) {
+						indices[fitting++] = i;
+					}
+				}
+			}
+			if (open <= size || fitting < size) {
+				// a subset of all open cells or digits removes nothing
+				continue;
+			}
+
+			// the subsets are sorted, so stop at the first one using more
+			// than the fitting indices
+			final int[] subsets = CandidateBoard.SUBSETS[size];
+			final int limit = 1 << fitting;
+			for (int s = 0; s < subsets.length && subsets[s] < limit; s++) {
+				int union = 0;
+				int subset = 0;
+				for (int rest = subsets[s]; rest != 0; rest &= rest - 1) {
+					final int index = indices[CandidateBoard.lowestDigit(rest) - 1];
+					union |= masks[index];
+					subset |= 1 << index;
+				}
+				if (CandidateBoard.count(union) != size) {
+					continue;
+				}
+
+				if (hidden) {
+					// subset = digits, union = positions: keep only the digits
+					for (int rest = union; rest != 0; rest &= rest - 1) {
+						final int cell = cells[CandidateBoard.lowestDigit(rest) - 1];
+						if (board.eliminate(cell, ~subset & CandidateBoard.ALL_DIGITS)) {
+							removed++;
+						}
+					}
+				} else {
+					// subset = positions, union = digits: remove from the rest
+					for (int i = 0; i < 9; i++) {
+						if ((subset & (1 << i)) == 0
+								&& board.eliminate(cells[i], union)) {
+							removed++;
+						}
+					}
+				}
+				if (removed > 0) {
+					// masks are outdated now
+					return removed;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getCost()
+	 */
+	public int getCost() {
+		return hidden ? HIDDEN_COSTS[size] : NAKED_COSTS[size];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getName()
+	 */
+	public String getName() {
+		return (hidden ? "Hidden " : "Naked ") + SIZE_NAMES[size];
+	}
+}
@@ -35,6 +35,11 @@ import de.wintermute.sudoku.res.Dict;
  * @version $Id: SudokuMidlet.java,v 1.50 2006/10/28 23:21:06 marcus Exp $
  */
 public class SudokuMidlet extends MIDlet {
+	/**
+	 * Application property with the number of threads creating a new game.
+	 */
+	private static final String CREATOR_WORKERS_PROPERTY = "Creator-Workers";
+
 	/**
 	 * The display for this MIDlet
 	 */
@@ -58,6 +63,11 @@ public class SudokuMidlet extends MIDlet {
 	 */
 	private CreatorTask creator;
 
+	/**
+	 * The ready games per level, refilled in the background.
+	 */
+	private final PuzzlePool pool;
+
 	/**
 	 * The external game solver (running in separate thread).
 	 */
@@ -93,6 +103,10 @@ public class SudokuMidlet extends MIDlet {
 
 		settingStore = new SettingsStore(canvas.stateHolder);
 
+		// the last two levels are the user game entries
+		pool = new PuzzlePool(this, canvas.stateHolder, levelNames.length - 2);
+		pool.setNumberOfWorkers(getCreatorWorkers());
+
 	}
 
 	/*
@@ -119,9 +133,13 @@ public class SudokuMidlet extends MIDlet {
 				createNewCanvas(canvas.stateHolder.isFullScreenMode());
 			}
 
+			pool.load();
+
 			final Grid autoSaveGrid = (Grid) GridStore.getAutoSaveGrid();
 			if (autoSaveGrid != null) {
 				gameCreated(autoSaveGrid);
+				// continue a creation suspended before the last exit
+				resumeNewGame();
 			} else {
 				startNewGame((short) 0);
 			}
@@ -132,6 +150,10 @@ public class SudokuMidlet extends MIDlet {
 				createNewCanvas(canvas.stateHolder.isFullScreenMode());
 			}
 
+			// continue a creation suspended by pauseApp()
+			if (!resumeNewGame()) {
+				pool.refill();
+			}
 			canvas.startTimer();
 		}
 
@@ -185,14 +207,94 @@ public class SudokuMidlet extends MIDlet {
 	 */
 	protected void startNewGame(final short level) {
 
+		final Grid pooled = pool.take(level);
+		if (pooled != null) {
+			// a suspended creation is replaced by the pooled game
+			GridStore.deleteCreatorCheckpoint();
+			gameCreated(pooled);
+			return;
+		}
+
+		// the player waits: no background creation meanwhile
+		pool.stop();
+
 		((IDisplayable)progressScreen).setTitle(levelNames[level]);
 		progressScreen.setAction(Dict.getString("createGame"));
 		displayProgressScreen();
 
+		// a suspended creation is replaced by the new one
+		GridStore.deleteCreatorCheckpoint();
+
 		creator = new CreatorTask(this, canvas.stateHolder);
+		creator.setNumberOfWorkers(getCreatorWorkers());
 		creator.createGame(level);
 	}
 
+	/**
+	 * Get the number of threads creating a new game from the application
+	 * property "Creator-Workers", e.g. the number of cores of the device.
+	 * 
+	 * @return the number of threads, 1 if not set
+	 */
+	private int getCreatorWorkers() {
+
+		final String workers = getAppProperty(CREATOR_WORKERS_PROPERTY);
+		if (workers != null) {
+			try {
+				return Integer.parseInt(workers.trim());
+			} catch (NumberFormatException e) {
+				// not a number, use one thread
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Resume the creation of a new game from a stored checkpoint, see
+	 * {@link #suspendNewGame()}.
+	 * 
+	 * @return true if a creation was resumed
+	 */
+	protected boolean resumeNewGame() {
+
+		final byte[] checkpoint = GridStore.getCreatorCheckpoint();
+		if (checkpoint == null) {
+			return false;
+		}
+		GridStore.deleteCreatorCheckpoint();
+		pool.stop();
+
+		final CreatorTask resumed = new CreatorTask(this, canvas.stateHolder);
+		resumed.setNumberOfWorkers(getCreatorWorkers());
+		try {
+			resumed.resumeGame(checkpoint);
+		} catch (IOException e) {
+			// can't continue, keep the current game
+			return false;
+		}
+		creator = resumed;
+
+		((IDisplayable) progressScreen).setTitle(levelNames[resumed
+				.getLevel()]);
+		progressScreen.setAction(Dict.getString("createGame"));
+		displayProgressScreen();
+		return true;
+	}
+
+	/**
+	 * Suspend a running creation of a new game and store its checkpoint, so it
+	 * can be resumed by {@link #resumeNewGame()}, even after a restart.
+	 */
+	protected void suspendNewGame() {
+
+		if (creator != null) {
+			final byte[] checkpoint = creator.suspend();
+			if (checkpoint != null) {
+				GridStore.saveCreatorCheckpoint(checkpoint);
+			}
+		}
+	}
+
 	/**
 	 * Display the progress screen.
 	 */
@@ -208,6 +310,8 @@ public class SudokuMidlet extends MIDlet {
 	 */
 	protected void pauseApp() {
 		canvas.stopTimer();
+		suspendNewGame();
+		pool.stop();
 		autoSave();
 	}
 
@@ -219,6 +323,8 @@ public class SudokuMidlet extends MIDlet {
 	protected void destroyApp(boolean arg0) throws MIDletStateChangeException {
 
 		canvas.stopTimer();
+		suspendNewGame();
+		pool.stop();
 		// save current Game/Grid to AUTOSAVE
 		autoSave();
 
@@ -270,6 +376,9 @@ public class SudokuMidlet extends MIDlet {
 		// new game was created => display in canvas
 		canvas.setNewGrid(grid);
 		displayCanvas();
+
+		// prepare the next games while the player is solving
+		pool.refill();
 	}
 
 	/**
@@ -299,6 +408,7 @@ public class SudokuMidlet extends MIDlet {
 		if (creator != null) {
 			if (creator.abort()) {
 				displayCanvas();
+				pool.refill();
 			}
 		}
 		if (solver != null) {
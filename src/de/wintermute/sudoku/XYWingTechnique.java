@@ -0,0 +1,88 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * XY-Wing: a pivot cell with the candidates XY sees two pincer cells with XZ
+ * and YZ. Whatever the pivot becomes, one of the pincers is Z, so Z can be
+ * removed from every cell seeing both pincers.
+ *
+ * @version $Id$
+ */
+public class XYWingTechnique implements ITechnique {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#apply(de.wintermute.sudoku.CandidateBoard)
+	 */
+	public int apply(final CandidateBoard board) {
+
+		final int[] candidates = board.candidates;
+
+		for (int pivot = 0; pivot < CandidateBoard.CELLS; pivot++) {
+			final int xy = candidates[pivot];
+			if (CandidateBoard.count(xy) != 2) {
+				continue;
+			}
+
+			final byte[] peers = CandidateBoard.PEERS[pivot];
+			for (int a = 0; a < peers.length; a++) {
+				final int xz = candidates[peers[a]];
+				if (CandidateBoard.count(xz) != 2
+						|| CandidateBoard.count(xz & xy) != 1) {
+					continue;
+				}
+				final int z = xz & ~xy;
+				// the other pincer holds the other pivot digit and z
+				final int yz = (xy & ~xz) | z;
+
+				for (int b = a + 1; b < peers.length; b++) {
+					if (candidates[peers[b]] != yz) {
+						continue;
+					}
+
+					int removed = 0;
+					for (int cell = 0; cell < CandidateBoard.CELLS; cell++) {
+						if (cell != pivot
+								&& (candidates[cell] & z) != 0
+								&& CandidateBoard.isPeer(cell, peers[a])
+								&& CandidateBoard.isPeer(cell, peers[b])
+								&& board.eliminate(cell, z)) {
+							removed++;
+						}
+					}
+					if (removed > 0) {
+						return removed;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getCost()
+	 */
+	public int getCost() {
+		return 42;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see de.wintermute.sudoku.ITechnique#getName()
+	 */
+	public String getName() {
+		return "XY-Wing";
+	}
+}
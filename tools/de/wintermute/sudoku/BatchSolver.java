@@ -0,0 +1,608 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Vector;
+
+/**
+ * Headless batch solving of puzzle files (J2SE only, not part of the midlet).
+ *
+ * Every input line is one puzzle of 81 characters, '1'..'9' for givens and
+ * '0' or '.' for empty cells. For every puzzle one line is written in input
+ * order: the status (unique, ambiguous, unsolvable, invalid, aborted), a tab
+ * and the first solution or '-'. A puzzle is aborted, if it uses up the node
+ * budget or the time budget per puzzle.
+ *
+ * The input is streamed in chunks, which are solved by a number of threads,
+ * so even huge files are solved in bounded memory. Throughput, latency
+ * percentiles and the status counts are reported on stderr. The parallel
+ * solver instead solves one puzzle after the other, each with all threads.
+ *
+ * The output is flushed after every chunk. With -resume an interrupted run
+ * continues after the last complete line of the output file: the same number
+ * of input lines is skipped and the results are appended. The statistics
+ * only cover the puzzles solved by the resumed run.
+ *
+ * Usage: BatchSolver [-threads n] [-solver grid|brute|dlx|parallel] [-nodes n]
+ * [-timeout ms] [-resume] [in [out]]
+ *
+ * @version $Id$
+ */
+public class BatchSolver {
+
+	/** Puzzles per thread in one chunk. */
+	private static final int PUZZLES_PER_THREAD = 256;
+
+	/** Status: exactly one solution. */
+	private static final byte UNIQUE = 0;
+
+	/** Status: more than one solution. */
+	private static final byte AMBIGUOUS = 1;
+
+	/** Status: no solution. */
+	private static final byte UNSOLVABLE = 2;
+
+	/** Status: not a puzzle line. */
+	private static final byte INVALID = 3;
+
+	/** Status: node or time budget used up. */
+	private static final byte ABORTED = 4;
+
+	/** Names of the status codes. */
+	private static final String[] STATUS_NAMES = { "unique", "ambiguous",
+			"unsolvable", "invalid", "aborted" };
+
+	/** Number of latency buckets: 16 per power of two. */
+	private static final int BUCKETS = 64 * 16;
+
+	/** The solver to use: grid, brute, dlx or parallel. */
+	private final String solverName;
+
+	/** Number of solving threads. */
+	private final int numberOfThreads;
+
+	/** Number of threads per puzzle of the parallel solver. */
+	private final int searchThreads;
+
+	/** Maximum number of search nodes per puzzle, 0 for no budget. */
+	private long nodeBudget = 0;
+
+	/** Maximum time per puzzle in ms, 0 for no budget. */
+	private long timeBudget = 0;
+
+	/** Number of input lines solved by an interrupted run before. */
+	private long skipLines = 0;
+
+	/** The puzzle lines of the current chunk. */
+	private final String[] lines;
+
+	/** The status of every puzzle of the current chunk. */
+	private final byte[] status;
+
+	/** The first solution of every puzzle of the current chunk. */
+	private final String[] solutions;
+
+	/** The solving time of every puzzle of the current chunk in ns. */
+	private final long[] latencies;
+
+	/** Number of puzzles in the current chunk. */
+	private int chunkSize;
+
+	/** Next puzzle of the chunk to take. */
+	private int nextIndex;
+
+	/** Count of puzzles per status. */
+	private final long[] statusCounts = new long[STATUS_NAMES.length];
+
+	/** Latency histogram in microseconds. */
+	private final long[] histogram = new long[BUCKETS];
+
+	/**
+	 * Create the batch solver.
+	 *
+	 * @param solverName
+	 *            grid, brute, dlx or parallel
+	 * @param threads
+	 *            the number of solving threads
+	 */
+	public BatchSolver(final String solverName, final int threads) {
+
+		this.solverName = solverName;
+		if (solverName.equals("parallel")) {
+			// one puzzle at a time, searched by all threads
+			this.numberOfThreads = 1;
+			this.searchThreads = threads < 1 ? 1 : threads;
+		} else {
+			this.numberOfThreads = threads < 1 ? 1 : threads;
+			this.searchThreads = 1;
+		}
+
+		final int size = numberOfThreads * PUZZLES_PER_THREAD;
+		lines = new String[size];
+		status = new byte[size];
+		solutions = new String[size];
+		latencies = new long[size];
+	}
+
+	/**
+	 * Command line entry.
+	 *
+	 * @param args
+	 *            [-threads n] [-solver grid|brute|dlx|parallel] [-nodes n]
+	 *            [-timeout ms] [-resume] [in [out]]
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public static void main(final String[] args) throws IOException {
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		String solver = "grid";
+		long nodes = 0;
+		long timeout = 0;
+		boolean resume = false;
+		String inName = null;
+		String outName = null;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-solver") && i + 1 < args.length) {
+				solver = args[++i];
+			} else if (args[i].equals("-nodes") && i + 1 < args.length) {
+				nodes = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-timeout") && i + 1 < args.length) {
+				timeout = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-resume")) {
+				resume = true;
+			} else if (inName == null) {
+				inName = args[i];
+			} else {
+				outName = args[i];
+			}
+		}
+
+		// the complete lines of an interrupted run are kept
+		long done = 0;
+		if (resume && outName != null && new File(outName).exists()) {
+			done = countCompleteLines(new File(outName));
+		}
+
+		final BufferedReader in = new BufferedReader(new InputStreamReader(
+				inName == null ? System.in : new FileInputStream(inName)),
+				1 << 16);
+		final Writer out = new BufferedWriter(new OutputStreamWriter(
+				outName == null ? (java.io.OutputStream) System.out
+						: new FileOutputStream(outName, done > 0)), 1 << 16);
+		try {
+			final BatchSolver batch = new BatchSolver(solver, threads);
+			batch.setBudget(nodes, timeout);
+			batch.setSkipLines(done);
+			batch.run(in, out, System.err);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Set the budget per puzzle. A puzzle using it up is reported as aborted.
+	 *
+	 * @param nodes
+	 *            the maximum number of search nodes, 0 for no budget
+	 * @param timeMillis
+	 *            the maximum time in ms, 0 for no budget
+	 */
+	public void setBudget(final long nodes, final long timeMillis) {
+
+		this.nodeBudget = nodes;
+		this.timeBudget = timeMillis;
+	}
+
+	/**
+	 * Set the number of input lines to skip, because an interrupted run has
+	 * solved them already.
+	 *
+	 * @param lines
+	 *            the number of lines
+	 */
+	public void setSkipLines(final long lines) {
+		this.skipLines = lines;
+	}
+
+	/**
+	 * Count the complete lines of the output file of an interrupted run and
+	 * cut off an incomplete last line.
+	 *
+	 * @param file
+	 *            the output file
+	 * @return the number of complete lines
+	 * @throws IOException
+	 *             if the file can't be read or cut
+	 */
+	static long countCompleteLines(final File file) throws IOException {
+
+		final RandomAccessFile data = new RandomAccessFile(file, "rw");
+		try {
+			final byte[] buffer = new byte[1 << 16];
+			long lines = 0;
+			long position = 0;
+			long end = 0;
+			int read;
+			while ((read = data.read(buffer)) > 0) {
+				for (int i = 0; i < read; i++) {
+					if (buffer[i] == '\n') {
+						lines++;
+						end = position + i + 1;
+					}
+				}
+				position += read;
+			}
+			data.setLength(end);
+			return lines;
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * Solve all puzzles of the input.
+	 *
+	 * @param in
+	 *            the puzzle lines
+	 * @param out
+	 *            receives one result line per puzzle
+	 * @param report
+	 *            receives the statistics
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public void run(final BufferedReader in, final Writer out,
+			final PrintStream report) throws IOException {
+
+		final Worker[] workers = new Worker[numberOfThreads];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(createSolver());
+		}
+
+		for (long i = 0; i < skipLines && in.readLine() != null; i++) {
+			// solved by an interrupted run
+		}
+		if (skipLines > 0) {
+			report.println("resumed at:  " + (skipLines + 1));
+		}
+
+		final long start = System.currentTimeMillis();
+		long total = 0;
+
+		while (readChunk(in) > 0) {
+			solveChunk(workers);
+			writeChunk(out);
+			// a resumed run continues after the last written chunk
+			out.flush();
+			total += chunkSize;
+		}
+
+		final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		report.println("puzzles:     " + total);
+		report.println("time ms:     " + elapsed);
+		report.println("puzzles/sec: " + (total * 1000 / elapsed));
+		report.println("p50 us:      " + getPercentile(total, 50));
+		report.println("p99 us:      " + getPercentile(total, 99));
+		for (int i = 0; i < STATUS_NAMES.length; i++) {
+			report.println(STATUS_NAMES[i] + ": " + statusCounts[i]);
+		}
+
+		// search statistics of all workers
+		final SolverStatistics statistics = new SolverStatistics();
+		for (int i = 0; i < workers.length; i++) {
+			statistics.add(workers[i].statistics);
+		}
+		final long solved = Math.max(1, total);
+		report.println("nodes/puzzle:   " + statistics.getNodes() / solved);
+		report.println("guesses/puzzle: " + statistics.getGuesses() / solved);
+		report.println("singles/puzzle: "
+				+ (statistics.getNakedSingles() + statistics.getHiddenSingles())
+				/ solved);
+		report.println("max depth:      " + statistics.getMaxDepth());
+	}
+
+	/**
+	 * Create a new solver instance for one thread.
+	 *
+	 * @return the solver
+	 */
+	private Solver createSolver() {
+
+		if (solverName.equals("brute")) {
+			return new BruteForceSolver(null, false);
+		} else if (solverName.equals("dlx")) {
+			return new DancingLinksSolver(null, false);
+		} else if (solverName.equals("parallel")) {
+			return new ParallelSolver(null, 2, searchThreads);
+		}
+		return new GridSolver(null);
+	}
+
+	/**
+	 * Read the next chunk of lines.
+	 *
+	 * @param in
+	 *            the input
+	 * @return number of lines read
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	private int readChunk(final BufferedReader in) throws IOException {
+
+		chunkSize = 0;
+		nextIndex = 0;
+		String line;
+		while (chunkSize < lines.length && (line = in.readLine()) != null) {
+			lines[chunkSize++] = line;
+		}
+		return chunkSize;
+	}
+
+	/**
+	 * Solve the current chunk with all workers.
+	 *
+	 * @param workers
+	 *            the workers
+	 */
+	private void solveChunk(final Worker[] workers) {
+
+		final Thread[] threads = new Thread[workers.length - 1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(workers[i + 1]);
+			threads[i].start();
+		}
+		workers[0].run();
+
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// go on waiting for the others
+			}
+		}
+	}
+
+	/**
+	 * Write the results of the current chunk in input order and count them.
+	 *
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	private void writeChunk(final Writer out) throws IOException {
+
+		for (int i = 0; i < chunkSize; i++) {
+			out.write(STATUS_NAMES[status[i]]);
+			out.write('\t');
+			out.write(solutions[i] == null ? "-" : solutions[i]);
+			out.write('\n');
+
+			statusCounts[status[i]]++;
+			histogram[bucketOf(latencies[i] / 1000)]++;
+
+			lines[i] = null;
+			solutions[i] = null;
+		}
+	}
+
+	/**
+	 * Take the next puzzle of the chunk.
+	 *
+	 * @return the index or -1 if all are taken
+	 */
+	private synchronized int takeIndex() {
+
+		if (nextIndex >= chunkSize) {
+			return -1;
+		}
+		return nextIndex++;
+	}
+
+	/**
+	 * Histogram bucket of a latency: exact below 32, then 16 buckets per
+	 * power of two.
+	 *
+	 * @param micros
+	 *            the latency in microseconds
+	 * @return the bucket
+	 */
+	private static int bucketOf(final long micros) {
+
+		if (micros < 32) {
+			return (int) micros;
+		}
+		int shift = 0;
+		while ((micros >> shift) >= 32) {
+			shift++;
+		}
+		return Math.min(BUCKETS - 1, shift * 16 + (int) (micros >> shift));
+	}
+
+	/**
+	 * Lowest latency of a bucket.
+	 *
+	 * @param bucket
+	 *            the bucket
+	 * @return the latency in microseconds
+	 */
+	private static long valueOf(final int bucket) {
+
+		if (bucket < 32) {
+			return bucket;
+		}
+		final int shift = bucket / 16 - 1;
+		return ((long) (bucket - shift * 16)) << shift;
+	}
+
+	/**
+	 * Get a latency percentile from the histogram.
+	 *
+	 * @param total
+	 *            number of measured puzzles
+	 * @param percent
+	 *            the percentile (0..100)
+	 * @return the latency in microseconds
+	 */
+	private long getPercentile(final long total, final int percent) {
+
+		final long rank = (total * percent + 99) / 100;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += histogram[i];
+			if (seen >= rank && seen > 0) {
+				return valueOf(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Parse a puzzle line into a grid.
+	 *
+	 * @param line
+	 *            the puzzle line
+	 * @return the grid or null if the line is no puzzle
+	 */
+	static Grid parse(final String line) {
+
+		final String puzzle = line.trim();
+		if (puzzle.length() != 81) {
+			return null;
+		}
+
+		final Grid grid = new Grid("batch");
+		for (int i = 0; i < 81; i++) {
+			final char c = puzzle.charAt(i);
+			if (c >= '1' && c <= '9') {
+				final GridSlot slot = grid.getSlot((byte) (i / 9),
+						(byte) (i % 9));
+				slot.setShown((byte) (c - '0'));
+			} else if (c != '0' && c != '.') {
+				return null;
+			}
+		}
+		grid.setAllShownDigitsAsOriginal();
+		return grid;
+	}
+
+	/**
+	 * Write the shown digits of a grid as one line.
+	 *
+	 * @param grid
+	 *            the grid
+	 * @return the 81 digits
+	 */
+	static String format(final Grid grid) {
+
+		final char[] digits = new char[81];
+		for (int i = 0; i < 81; i++) {
+			digits[i] = (char) ('0' + grid.getSlot((byte) (i / 9),
+					(byte) (i % 9)).getShown());
+		}
+		return new String(digits);
+	}
+
+	/**
+	 * A solving thread with its own solver.
+	 */
+	private class Worker implements Runnable {
+
+		/** The solver of this worker. */
+		private final Solver solver;
+
+		/** The token of the solver, checking the budget per puzzle. */
+		private final CancellationToken token = new CancellationToken();
+
+		/** The sum of the statistics of all searches of this worker. */
+		private final SolverStatistics statistics = new SolverStatistics();
+
+		/**
+		 * Create a worker.
+		 *
+		 * @param solver
+		 *            the own solver
+		 */
+		private Worker(final Solver solver) {
+			this.solver = solver;
+			token.setNodeBudget(nodeBudget);
+			solver.setCancellationToken(token);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+
+			int index = takeIndex();
+			while (index >= 0) {
+				final long start = System.nanoTime();
+				solve(index);
+				latencies[index] = System.nanoTime() - start;
+				index = takeIndex();
+			}
+		}
+
+		/**
+		 * Solve one puzzle of the chunk.
+		 *
+		 * @param index
+		 *            the index within the chunk
+		 */
+		private void solve(final int index) {
+
+			final Grid grid = parse(lines[index]);
+			if (grid == null) {
+				status[index] = INVALID;
+				return;
+			}
+
+			token.reset();
+			if (timeBudget > 0) {
+				token.setDeadline(System.currentTimeMillis() + timeBudget);
+			}
+
+			final Vector found;
+			if (solver instanceof GridSolver) {
+				found = ((GridSolver) solver).searchSolutionsWithoutAnswer(grid);
+			} else {
+				found = solver.searchSolutions(grid);
+			}
+			statistics.add(solver.getStatistics());
+
+			if (token.isCancelled()) {
+				status[index] = ABORTED;
+			} else if (found.isEmpty()) {
+				status[index] = UNSOLVABLE;
+			} else {
+				status[index] = found.size() == 1 ? UNIQUE : AMBIGUOUS;
+				solutions[index] = format((Grid) found.firstElement());
+			}
+		}
+	}
+}
@@ -0,0 +1,616 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * The shape of a grid of any size N = k * k (4x4, 9x9, 16x16, 25x25): its
+ * units (rows, columns, blocks) and the tables derived from them, used by the
+ * {@link GeneralCandidateBoard}.
+ *
+ * Variants only change the units: X-Sudoku adds the two diagonals, jigsaw
+ * puzzles replace the blocks by irregular regions. Killer puzzles add cages,
+ * groups of cells with distinct digits and a given sum.
+ *
+ * Everything is computed once from the units and cages: the units and cages
+ * of every cell, the peers of every cell, the pairs of units sharing more
+ * than one cell (for locked candidates) and the possible digit sets of every
+ * cage. Digits are bits of an int (bit 0 = digit 1), so N is at most 25.
+ *
+ * The general engine (this class, {@link GeneralCandidateBoard},
+ * {@link GeneralSolver} and {@link GeneralGridCreator}) is J2SE only, not part
+ * of the midlet: the game, its {@link Grid} and its storage stay 9x9 and use
+ * the faster, fixed tables of {@link CandidateBoard}.
+ *
+ * @version $Id$
+ */
+public class BoardGeometry {
+
+	/** Largest supported block size (25x25 grids). */
+	public static final int MAX_BOX_SIZE = 5;
+
+	/** Characters of the digits 1..25 in text format. */
+	public static final String DIGIT_CHARS = "123456789ABCDEFGHIJKLMNOP";
+
+	/** Number of set bits for every 9 bit mask. */
+	private static final byte[] BIT_COUNT = new byte[512];
+
+	/** Position (1..9) of the lowest set bit for every 9 bit mask. */
+	private static final byte[] LOWEST_BIT = new byte[512];
+
+	/** The standard geometries by block size. */
+	private static final BoardGeometry[] STANDARD = new BoardGeometry[MAX_BOX_SIZE + 1];
+
+	static {
+		for (int mask = 1; mask < 512; mask++) {
+			BIT_COUNT[mask] = (byte) (BIT_COUNT[mask >> 1] + (mask & 1));
+			LOWEST_BIT[mask] = (mask & 1) != 0 ? 1
+					: (byte) (LOWEST_BIT[mask >> 1] + 1);
+		}
+	}
+
+	/** Block size k. */
+	final int boxSize;
+
+	/** Number of digits N = k * k, also cells per unit. */
+	final int size;
+
+	/** Number of cells N * N. */
+	final int cells;
+
+	/** Mask with all N digits set. */
+	final int allDigits;
+
+	/** The cells of every unit. */
+	final short[][] units;
+
+	/** The units of every cell. */
+	final short[][] unitsOfCell;
+
+	/** The other cells sharing a unit with every cell. */
+	final short[][] peers;
+
+	/**
+	 * For every ordered pair (A, B) of units sharing more than one cell: the
+	 * unit A.
+	 */
+	final short[] lockedUnit;
+
+	/** For every pair (A, B): the cells of A not in B. */
+	final short[][] lockedOutside;
+
+	/** For every pair (A, B): the cells of B not in A. */
+	final short[][] lockedTargets;
+
+	/** The cells of every killer cage. */
+	final short[][] cages;
+
+	/** The sum of every cage. */
+	final int[] cageSums;
+
+	/** For every cage: all digit masks of its size with its sum. */
+	final int[][] cageCombos;
+
+	/** The cages of every cell. */
+	final short[][] cagesOfCell;
+
+	/**
+	 * Create the standard geometry with rows, columns and blocks.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5)
+	 */
+	public BoardGeometry(final int boxSize) {
+		this(boxSize, standardUnits(boxSize));
+	}
+
+	/**
+	 * Create a geometry from its units.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5), the grid has k * k digits
+	 * @param units
+	 *            the cells of every unit
+	 */
+	protected BoardGeometry(final int boxSize, final short[][] units) {
+		this(boxSize, units, new short[0][], new int[0]);
+	}
+
+	/**
+	 * Create a geometry from its units and killer cages.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5), the grid has k * k digits
+	 * @param units
+	 *            the cells of every unit
+	 * @param cages
+	 *            the cells of every cage
+	 * @param cageSums
+	 *            the sum of every cage
+	 */
+	protected BoardGeometry(final int boxSize, final short[][] units,
+			final short[][] cages, final int[] cageSums) {
+
+		if (boxSize < 2 || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("block size " + boxSize);
+		}
+		this.boxSize = boxSize;
+		this.size = boxSize * boxSize;
+		this.cells = size * size;
+		this.allDigits = (1 << size) - 1;
+		this.units = units;
+		if (cages.length != cageSums.length) {
+			throw new IllegalArgumentException("cages " + cages.length
+					+ ", sums " + cageSums.length);
+		}
+		this.cages = cages;
+		this.cageSums = cageSums;
+
+		unitsOfCell = groupsOfCell(units, cells);
+		cagesOfCell = groupsOfCell(cages, cells);
+
+		// peers: all other cells of the units and cages of a cell
+		peers = new short[cells][];
+		final boolean[] isPeer = new boolean[cells];
+		final short[] found = new short[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			int count = addPeers(cell, units, unitsOfCell[cell], isPeer,
+					found, 0);
+			count = addPeers(cell, cages, cagesOfCell[cell], isPeer, found,
+					count);
+			peers[cell] = new short[count];
+			for (int i = 0; i < count; i++) {
+				peers[cell][i] = found[i];
+				isPeer[found[i]] = false;
+			}
+		}
+
+		// ordered pairs of units sharing more than one cell
+		int pairs = 0;
+		for (int a = 0; a < units.length; a++) {
+			for (int b = 0; b < units.length; b++) {
+				if (a != b && countShared(units[a], units[b]) > 1) {
+					pairs++;
+				}
+			}
+		}
+		lockedUnit = new short[pairs];
+		lockedOutside = new short[pairs][];
+		lockedTargets = new short[pairs][];
+		pairs = 0;
+		for (int a = 0; a < units.length; a++) {
+			for (int b = 0; b < units.length; b++) {
+				if (a != b && countShared(units[a], units[b]) > 1) {
+					lockedUnit[pairs] = (short) a;
+					lockedOutside[pairs] = without(units[a], units[b]);
+					lockedTargets[pairs] = without(units[b], units[a]);
+					pairs++;
+				}
+			}
+		}
+
+		// digit sets of the cages
+		cageCombos = new int[cages.length][];
+		for (int c = 0; c < cages.length; c++) {
+			if (cages[c].length > size) {
+				throw new IllegalArgumentException("cage of " + cages[c].length
+						+ " cells");
+			}
+			final int count = collectCombos(size, cages[c].length, cageSums[c],
+					1, 0, null, 0);
+			cageCombos[c] = new int[count];
+			collectCombos(size, cages[c].length, cageSums[c], 1, 0,
+					cageCombos[c], 0);
+		}
+	}
+
+	/**
+	 * Get the standard geometry for a block size.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5)
+	 * @return the shared geometry
+	 */
+	public static synchronized BoardGeometry forBoxSize(final int boxSize) {
+
+		if (boxSize < 2 || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("block size " + boxSize);
+		}
+		if (STANDARD[boxSize] == null) {
+			STANDARD[boxSize] = new BoardGeometry(boxSize);
+		}
+		return STANDARD[boxSize];
+	}
+
+	/**
+	 * Create the geometry of an X-Sudoku: rows, columns, blocks and both main
+	 * diagonals.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5)
+	 * @return the new geometry
+	 */
+	public static BoardGeometry diagonal(final int boxSize) {
+
+		if (boxSize < 2 || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("block size " + boxSize);
+		}
+		final int n = boxSize * boxSize;
+		final short[][] standard = standardUnits(boxSize);
+		final short[][] units = new short[standard.length + 2][];
+		System.arraycopy(standard, 0, units, 0, standard.length);
+		units[standard.length] = new short[n];
+		units[standard.length + 1] = new short[n];
+		for (int i = 0; i < n; i++) {
+			units[standard.length][i] = (short) (i * n + i);
+			units[standard.length + 1][i] = (short) (i * n + n - 1 - i);
+		}
+		return new BoardGeometry(boxSize, units);
+	}
+
+	/**
+	 * Create the geometry of a jigsaw puzzle: rows, columns and irregular
+	 * regions instead of the blocks.
+	 *
+	 * @param boxSize
+	 *            the block size k (2..5)
+	 * @param regions
+	 *            the region (0..N-1) of every cell, every region has N cells
+	 * @return the new geometry
+	 */
+	public static BoardGeometry jigsaw(final int boxSize, final byte[] regions) {
+
+		if (boxSize < 2 || boxSize > MAX_BOX_SIZE) {
+			throw new IllegalArgumentException("block size " + boxSize);
+		}
+		final int n = boxSize * boxSize;
+		if (regions.length != n * n) {
+			throw new IllegalArgumentException("regions of " + regions.length
+					+ " cells");
+		}
+		final short[][] units = standardUnits(boxSize);
+		final int[] filled = new int[n];
+		for (int cell = 0; cell < regions.length; cell++) {
+			final int region = regions[cell];
+			if (region < 0 || region >= n || filled[region] == n) {
+				throw new IllegalArgumentException("region " + region
+						+ " at cell " + cell);
+			}
+			units[2 * n + region][filled[region]++] = (short) cell;
+		}
+		return new BoardGeometry(boxSize, units);
+	}
+
+	/**
+	 * Create the geometry of a killer puzzle with the units of this one.
+	 *
+	 * @param cages
+	 *            the cells of every cage, at most N cells each
+	 * @param sums
+	 *            the sum of every cage
+	 * @return the new geometry
+	 */
+	public BoardGeometry withCages(final short[][] cages, final int[] sums) {
+		return new BoardGeometry(boxSize, units, cages, sums);
+	}
+
+	/**
+	 * Get the standard geometry for a number of cells.
+	 *
+	 * @param cells
+	 *            the number of cells (16, 81, 256 or 625)
+	 * @return the shared geometry or null if there is none
+	 */
+	public static BoardGeometry forCells(final int cells) {
+
+		for (int k = 2; k <= MAX_BOX_SIZE; k++) {
+			if (k * k * k * k == cells) {
+				return forBoxSize(k);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create the rows, columns and blocks of a grid.
+	 *
+	 * @param boxSize
+	 *            the block size k
+	 * @return the cells of the 3 * N units
+	 */
+	static short[][] standardUnits(final int boxSize) {
+
+		final int n = boxSize * boxSize;
+		final short[][] units = new short[3 * n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				// row i, column i
+				units[i][j] = (short) (i * n + j);
+				units[n + i][j] = (short) (j * n + i);
+				// block i, cell j within the block
+				final int row = (i / boxSize) * boxSize + j / boxSize;
+				final int col = (i % boxSize) * boxSize + j % boxSize;
+				units[2 * n + i][j] = (short) (row * n + col);
+			}
+		}
+		return units;
+	}
+
+	/**
+	 * Invert groups of cells (units or cages) to the groups of every cell.
+	 *
+	 * @param groups
+	 *            the cells of every group
+	 * @param cells
+	 *            the number of cells
+	 * @return the groups of every cell
+	 */
+	private static short[][] groupsOfCell(final short[][] groups,
+			final int cells) {
+
+		final int[] groupCount = new int[cells];
+		for (int g = 0; g < groups.length; g++) {
+			for (int i = 0; i < groups[g].length; i++) {
+				groupCount[groups[g][i]]++;
+			}
+		}
+		final short[][] ofCell = new short[cells][];
+		for (int cell = 0; cell < cells; cell++) {
+			ofCell[cell] = new short[groupCount[cell]];
+			groupCount[cell] = 0;
+		}
+		for (int g = 0; g < groups.length; g++) {
+			for (int i = 0; i < groups[g].length; i++) {
+				final int cell = groups[g][i];
+				ofCell[cell][groupCount[cell]++] = (short) g;
+			}
+		}
+		return ofCell;
+	}
+
+	/**
+	 * Collect the other cells of some groups of a cell as its peers.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @param groups
+	 *            the cells of every group
+	 * @param ofCell
+	 *            the groups of the cell
+	 * @param isPeer
+	 *            marks the peers found so far
+	 * @param found
+	 *            the peers found so far
+	 * @param count
+	 *            the number of peers found so far
+	 * @return the new number of peers
+	 */
+	private static int addPeers(final int cell, final short[][] groups,
+			final short[] ofCell, final boolean[] isPeer, final short[] found,
+			int count) {
+
+		for (int j = 0; j < ofCell.length; j++) {
+			final short[] group = groups[ofCell[j]];
+			for (int i = 0; i < group.length; i++) {
+				if (group[i] != cell && !isPeer[group[i]]) {
+					isPeer[group[i]] = true;
+					found[count++] = group[i];
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Collect the sets of distinct digits with a given size and sum.
+	 *
+	 * @param size
+	 *            the highest digit N
+	 * @param count
+	 *            the number of digits still to add
+	 * @param sum
+	 *            the sum still to reach
+	 * @param digit
+	 *            the lowest digit still to add
+	 * @param mask
+	 *            the digits added so far
+	 * @param target
+	 *            the array to fill, null to count only
+	 * @param found
+	 *            the number of sets found so far
+	 * @return the new number of sets
+	 */
+	private static int collectCombos(final int size, final int count,
+			final int sum, final int digit, final int mask, final int[] target,
+			int found) {
+
+		if (count == 0) {
+			if (sum == 0) {
+				if (target != null) {
+					target[found] = mask;
+				}
+				found++;
+			}
+			return found;
+		}
+		for (int d = digit; d <= size && d <= sum; d++) {
+			found = collectCombos(size, count - 1, sum - d, d + 1, mask
+					| (1 << (d - 1)), target, found);
+		}
+		return found;
+	}
+
+	/**
+	 * Count the cells two units share.
+	 *
+	 * @param a
+	 *            the first unit
+	 * @param b
+	 *            the second unit
+	 * @return the number of shared cells
+	 */
+	private static int countShared(final short[] a, final short[] b) {
+
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			for (int j = 0; j < b.length; j++) {
+				if (a[i] == b[j]) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the cells of a unit, which are not in another one.
+	 *
+	 * @param a
+	 *            the unit
+	 * @param b
+	 *            the cells to leave out
+	 * @return the remaining cells of a
+	 */
+	private static short[] without(final short[] a, final short[] b) {
+
+		final short[] rest = new short[a.length - countShared(a, b)];
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			boolean shared = false;
+			for (int j = 0; j < b.length && !shared; j++) {
+				shared = a[i] == b[j];
+			}
+			if (!shared) {
+				rest[count++] = a[i];
+			}
+		}
+		return rest;
+	}
+
+	/**
+	 * Count the digits in a mask.
+	 *
+	 * @param mask
+	 *            the digit mask (up to 25 bits)
+	 * @return number of digits
+	 */
+	public static int count(final int mask) {
+		return BIT_COUNT[mask & 0x1FF] + BIT_COUNT[(mask >> 9) & 0x1FF]
+				+ BIT_COUNT[mask >>> 18];
+	}
+
+	/**
+	 * Get the lowest digit of a mask.
+	 *
+	 * @param mask
+	 *            the digit mask (up to 25 bits), not 0
+	 * @return the digit (1..25)
+	 */
+	public static int lowestDigit(final int mask) {
+
+		if ((mask & 0x1FF) != 0) {
+			return LOWEST_BIT[mask & 0x1FF];
+		}
+		if ((mask & 0x3FE00) != 0) {
+			return 9 + LOWEST_BIT[(mask >> 9) & 0x1FF];
+		}
+		return 18 + LOWEST_BIT[mask >>> 18];
+	}
+
+	/**
+	 * Get the block size k.
+	 *
+	 * @return the block size
+	 */
+	public int getBoxSize() {
+		return boxSize;
+	}
+
+	/**
+	 * Get the number of digits N, which is also the number of rows and
+	 * columns.
+	 *
+	 * @return the number of digits
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the number of cells.
+	 *
+	 * @return N * N
+	 */
+	public int getCells() {
+		return cells;
+	}
+
+	/**
+	 * Get the number of units.
+	 *
+	 * @return the units
+	 */
+	public int getUnitCount() {
+		return units.length;
+	}
+
+	/**
+	 * Get the number of killer cages.
+	 *
+	 * @return the cages
+	 */
+	public int getCageCount() {
+		return cages.length;
+	}
+
+	/**
+	 * Read a grid in text format: one character per cell, row by row, the
+	 * digits as in {@link #DIGIT_CHARS}, '0' or '.' for empty cells.
+	 *
+	 * @param line
+	 *            the text
+	 * @return the digits (0 = empty) or null if the text doesn't fit
+	 */
+	public byte[] parse(final String line) {
+
+		if (line.length() != cells) {
+			return null;
+		}
+		final byte[] digits = new byte[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			final char c = line.charAt(cell);
+			if (c == '0' || c == '.') {
+				continue;
+			}
+			final int digit = DIGIT_CHARS.indexOf(Character.toUpperCase(c)) + 1;
+			if (digit < 1 || digit > size) {
+				return null;
+			}
+			digits[cell] = (byte) digit;
+		}
+		return digits;
+	}
+
+	/**
+	 * Write a grid in text format, see {@link #parse(String)}.
+	 *
+	 * @param digits
+	 *            the digits (0 = empty)
+	 * @return the text
+	 */
+	public String format(final byte[] digits) {
+
+		final char[] line = new char[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			line[cell] = digits[cell] == 0 ? '.' : DIGIT_CHARS
+					.charAt(digits[cell] - 1);
+		}
+		return new String(line);
+	}
+}
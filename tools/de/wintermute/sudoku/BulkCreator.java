@@ -0,0 +1,311 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Headless bulk creation of puzzles (J2SE only, not part of the midlet).
+ *
+ * Every puzzle is written as one line of 81 digits ('0' for empty cells), the
+ * input format of {@link BatchSolver}. The full grids are derived from a seed
+ * grid by {@link GridTransformer}, so no search is needed for them: either
+ * the given seed or one random grid per thread. With -fresh every full grid
+ * is filled at random instead. Throughput and the number of attempts are
+ * reported on stderr.
+ *
+ * Usage: BulkCreator [-count n] [-level easy|normal|hard] [-threads n]
+ * [-seed grid | -fresh] [out]
+ *
+ * @version $Id$
+ */
+public class BulkCreator {
+
+	/** Number of puzzles to create. */
+	private final long count;
+
+	/** Number of givens of every puzzle. */
+	private final short givens;
+
+	/** Number of creating threads. */
+	private final int numberOfThreads;
+
+	/** The seed grid of all threads, null for one random seed per thread. */
+	private byte[] seedGrid = null;
+
+	/** Set to fill every full grid at random instead of deriving it. */
+	private boolean fresh = false;
+
+	/** Number of puzzles taken by the threads so far. */
+	private long taken = 0;
+
+	/** Number of attempts of all threads, including the failed ones. */
+	private long attempts = 0;
+
+	/**
+	 * Create the bulk creator.
+	 *
+	 * @param count
+	 *            the number of puzzles
+	 * @param givens
+	 *            the number of givens of every puzzle
+	 * @param threads
+	 *            the number of creating threads
+	 */
+	public BulkCreator(final long count, final short givens, final int threads) {
+
+		this.count = count;
+		this.givens = givens;
+		this.numberOfThreads = threads < 1 ? 1 : threads;
+	}
+
+	/**
+	 * Command line entry.
+	 *
+	 * @param args
+	 *            [-count n] [-level easy|normal|hard] [-threads n] [-seed
+	 *            grid | -fresh] [out]
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void main(final String[] args) throws IOException {
+
+		long count = 1000;
+		short givens = GridCreator.NORMAL_GAME;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String seed = null;
+		boolean fresh = false;
+		String outName = null;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-count") && i + 1 < args.length) {
+				count = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-level") && i + 1 < args.length) {
+				final String level = args[++i];
+				if (level.equals("easy")) {
+					givens = GridCreator.EASY_GAME;
+				} else if (level.equals("hard")) {
+					givens = GridCreator.HARD_GAME;
+				} else {
+					givens = GridCreator.NORMAL_GAME;
+				}
+			} else if (args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-seed") && i + 1 < args.length) {
+				seed = args[++i];
+			} else if (args[i].equals("-fresh")) {
+				fresh = true;
+			} else {
+				outName = args[i];
+			}
+		}
+
+		final BulkCreator bulk = new BulkCreator(count, givens, threads);
+		if (seed != null) {
+			final Grid grid = BatchSolver.parse(seed);
+			if (grid == null || grid.getNumberOfGiven() != 81
+					|| new DancingLinksSolver(null, false).countSolutions(
+							grid, 1) != 1) {
+				System.err.println("the seed is not a full grid: " + seed);
+				System.exit(1);
+			}
+			bulk.setSeedGrid(toDigits(grid));
+		}
+		bulk.setFresh(fresh);
+
+		final Writer out = new BufferedWriter(new OutputStreamWriter(
+				outName == null ? (java.io.OutputStream) System.out
+						: new FileOutputStream(outName)), 1 << 16);
+		try {
+			bulk.run(out, System.err);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Set the seed grid of all threads.
+	 *
+	 * @param seed
+	 *            the digit of every cell of a full grid, null for one random
+	 *            seed per thread
+	 */
+	public void setSeedGrid(final byte[] seed) {
+		this.seedGrid = seed;
+	}
+
+	/**
+	 * Fill every full grid at random instead of deriving it from a seed.
+	 *
+	 * @param fillEveryGrid
+	 *            true to fill every grid
+	 */
+	public void setFresh(final boolean fillEveryGrid) {
+		this.fresh = fillEveryGrid;
+	}
+
+	/**
+	 * Create all puzzles.
+	 *
+	 * @param out
+	 *            receives one line per puzzle
+	 * @param report
+	 *            receives the statistics
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void run(final Writer out, final PrintStream report)
+			throws IOException {
+
+		final Worker[] workers = new Worker[numberOfThreads];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(out);
+		}
+
+		final long start = System.currentTimeMillis();
+
+		final Thread[] threads = new Thread[workers.length - 1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(workers[i + 1]);
+			threads[i].start();
+		}
+		workers[0].run();
+
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				// go on waiting for the others
+			}
+		}
+		out.flush();
+
+		for (int i = 0; i < workers.length; i++) {
+			if (workers[i].failure != null) {
+				throw workers[i].failure;
+			}
+		}
+
+		final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		report.println("puzzles:     " + taken);
+		report.println("attempts:    " + attempts);
+		report.println("time ms:     " + elapsed);
+		report.println("puzzles/sec: " + (taken * 1000 / elapsed));
+	}
+
+	/**
+	 * Take the next puzzle to create.
+	 *
+	 * @return true if there is one left
+	 */
+	private synchronized boolean takePuzzle() {
+
+		if (taken >= count) {
+			return false;
+		}
+		taken++;
+		return true;
+	}
+
+	/**
+	 * Add the attempts of a worker.
+	 *
+	 * @param workerAttempts
+	 *            the attempts
+	 */
+	private synchronized void addAttempts(final long workerAttempts) {
+		attempts += workerAttempts;
+	}
+
+	/**
+	 * Get the digits of all cells of a grid.
+	 *
+	 * @param grid
+	 *            the grid
+	 * @return the shown digit of every cell
+	 */
+	private static byte[] toDigits(final Grid grid) {
+
+		final byte[] digits = new byte[CandidateBoard.CELLS];
+		for (byte row = 0; row < 9; row++) {
+			for (byte col = 0; col < 9; col++) {
+				digits[row * 9 + col] = grid.getSlot(row, col).getShown();
+			}
+		}
+		return digits;
+	}
+
+	/**
+	 * A creating thread with its own creator.
+	 */
+	private class Worker implements Runnable {
+
+		/** The output, shared by all workers. */
+		private final Writer out;
+
+		/** The creator of this worker. */
+		private final GridCreator creator = new GridCreator(null);
+
+		/** The error writing the output, if any. */
+		private IOException failure = null;
+
+		/**
+		 * Create a worker.
+		 *
+		 * @param out
+		 *            the shared output
+		 */
+		private Worker(final Writer out) {
+
+			this.out = out;
+			if (!fresh) {
+				byte[] seed = seedGrid;
+				if (seed == null) {
+					seed = new byte[CandidateBoard.CELLS];
+					new GridFiller(new Random()).fill(seed);
+				}
+				creator.setSeedGrid(seed);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+
+			long tries = 0;
+			try {
+				while (takePuzzle()) {
+					Grid puzzle = null;
+					while (puzzle == null) {
+						puzzle = creator.createNewUniqueGame(givens);
+						tries++;
+					}
+					final String line = BatchSolver.format(puzzle);
+					synchronized (out) {
+						out.write(line);
+						out.write('\n');
+					}
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+			addAttempts(tries);
+		}
+	}
+}
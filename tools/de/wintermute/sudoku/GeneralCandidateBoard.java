@@ -0,0 +1,626 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Solving state of a grid of any {@link BoardGeometry}: the candidates of all
+ * cells as bit masks of up to 25 digits and the digits used in every unit.
+ *
+ * Works like the {@link CandidateBoard} of the 9x9 game: place() and
+ * eliminate() record their changes on a trail for undo(), and fill a worklist
+ * of cells and units for propagate(). Large grids need more than singles to
+ * keep the search small, so propagate() also applies locked candidates
+ * (pointing and claiming) to every pair of intersecting units once the
+ * singles are exhausted. The cages of killer puzzles are kept in a worklist
+ * too: their candidates are reduced to the digits of the sets with the right
+ * sum which still fit.
+ *
+ * @version $Id$
+ */
+public class GeneralCandidateBoard {
+
+	/** The shape of the grid. */
+	final BoardGeometry geometry;
+
+	/** The candidates of every cell. A filled cell has no candidates left. */
+	final int[] candidates;
+
+	/** The digit of every cell (0 = empty). */
+	final byte[] digits;
+
+	/** Digits used in every unit. */
+	final int[] used;
+
+	/** Number of still empty cells. */
+	int emptyCount;
+
+	/** The changed cells in order of change. A placed digit is stored as ~cell. */
+	private final short[] trailCell;
+
+	/** The candidates of the changed cells before the change. */
+	private final int[] trailMask;
+
+	/** Number of entries on the trail. */
+	private int trailSize;
+
+	/** Cells left with one candidate or none, to check for naked singles. */
+	private final short[] pendingCells;
+
+	/** Marks the cells in {@link #pendingCells}. */
+	private final boolean[] pending;
+
+	/** Number of entries in {@link #pendingCells}. */
+	private int pendingCount;
+
+	/** Units with changed candidates, to check for hidden singles. */
+	private final short[] pendingUnits;
+
+	/** Marks the units in {@link #pendingUnits}. */
+	private final boolean[] unitPending;
+
+	/** Number of entries in {@link #pendingUnits}. */
+	private int pendingUnitCount;
+
+	/** Cages with changed candidates, to check their sums. */
+	private final short[] pendingCages;
+
+	/** Marks the cages in {@link #pendingCages}. */
+	private final boolean[] cagePending;
+
+	/** Number of entries in {@link #pendingCages}. */
+	private int pendingCageCount;
+
+	/** Set by every elimination, to repeat the locked candidates. */
+	private boolean changed;
+
+	/** Naked singles placed so far (never reset, for statistics). */
+	long nakedSingles;
+
+	/** Hidden singles placed so far (never reset, for statistics). */
+	long hiddenSingles;
+
+	/** Candidates removed by locked candidates (never reset). */
+	long lockedEliminations;
+
+	/** Candidates removed by cage sums (never reset). */
+	long cageEliminations;
+
+	/**
+	 * Create an empty board.
+	 *
+	 * @param geometry
+	 *            the shape of the grid
+	 */
+	public GeneralCandidateBoard(final BoardGeometry geometry) {
+
+		this.geometry = geometry;
+		final int cells = geometry.cells;
+		candidates = new int[cells];
+		digits = new byte[cells];
+		used = new int[geometry.units.length];
+		// every candidate of every cell can be removed once, every cell can be
+		// filled once
+		trailCell = new short[cells * geometry.size + cells];
+		trailMask = new int[trailCell.length];
+		pendingCells = new short[cells];
+		pending = new boolean[cells];
+		pendingUnits = new short[geometry.units.length];
+		unitPending = new boolean[geometry.units.length];
+		pendingCages = new short[geometry.cages.length];
+		cagePending = new boolean[geometry.cages.length];
+		clear();
+	}
+
+	/**
+	 * Get the shape of the grid.
+	 *
+	 * @return the geometry
+	 */
+	public BoardGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Clear the board: every cell empty, every digit possible. The sums of all
+	 * cages are pending.
+	 */
+	public void clear() {
+
+		for (int cell = 0; cell < geometry.cells; cell++) {
+			candidates[cell] = geometry.allDigits;
+			digits[cell] = 0;
+		}
+		for (int u = 0; u < used.length; u++) {
+			used[u] = 0;
+		}
+		emptyCount = geometry.cells;
+		trailSize = 0;
+		clearPending();
+		for (int c = 0; c < geometry.cages.length; c++) {
+			addPendingCage(c);
+		}
+	}
+
+	/**
+	 * Load the given digits. All other cells are empty.
+	 *
+	 * @param givens
+	 *            the digit of every cell (0 = empty)
+	 * @return false if two givens are in conflict
+	 */
+	public boolean load(final byte[] givens) {
+
+		clear();
+		boolean valid = true;
+		for (int cell = 0; cell < geometry.cells; cell++) {
+			if (givens[cell] > 0) {
+				// candidates cover cage mates, the units the rest
+				if ((candidates[cell] & (1 << (givens[cell] - 1))) == 0
+						|| !isPossible(cell, givens[cell])) {
+					valid = false;
+				}
+				place(cell, givens[cell]);
+			}
+		}
+		// the givens are never taken back
+		trailSize = 0;
+		return valid;
+	}
+
+	/**
+	 * Check if the digit is not yet used in the units of the cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @param digit
+	 *            the digit (1..N)
+	 * @return true if the digit may be placed
+	 */
+	public boolean isPossible(final int cell, final int digit) {
+
+		final int bit = 1 << (digit - 1);
+		final short[] units = geometry.unitsOfCell[cell];
+		for (int i = 0; i < units.length; i++) {
+			if ((used[units[i]] & bit) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Place a digit and eliminate it from the candidates of all peers.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @param digit
+	 *            the digit (1..N)
+	 */
+	public void place(final int cell, final int digit) {
+
+		final int bit = 1 << (digit - 1);
+
+		// record the placement and the old candidates of the cell
+		trailCell[trailSize] = (short) ~cell;
+		trailMask[trailSize++] = candidates[cell];
+
+		digits[cell] = (byte) digit;
+		candidates[cell] = 0;
+		emptyCount--;
+		final short[] units = geometry.unitsOfCell[cell];
+		for (int i = 0; i < units.length; i++) {
+			used[units[i]] |= bit;
+			// the other candidates of the cell are gone from its units
+			addPendingUnit(units[i]);
+		}
+		final short[] cages = geometry.cagesOfCell[cell];
+		for (int i = 0; i < cages.length; i++) {
+			addPendingCage(cages[i]);
+		}
+
+		final short[] peers = geometry.peers[cell];
+		for (int i = 0; i < peers.length; i++) {
+			eliminate(peers[i], bit);
+		}
+	}
+
+	/**
+	 * Remove candidates from a cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @param mask
+	 *            the candidates to remove
+	 * @return true if at least one candidate was removed
+	 */
+	public boolean eliminate(final int cell, final int mask) {
+
+		final int old = candidates[cell];
+		if ((old & mask) == 0) {
+			return false;
+		}
+		trailCell[trailSize] = (short) cell;
+		trailMask[trailSize++] = old;
+		final int left = old & ~mask;
+		candidates[cell] = left;
+		changed = true;
+
+		final short[] units = geometry.unitsOfCell[cell];
+		for (int i = 0; i < units.length; i++) {
+			addPendingUnit(units[i]);
+		}
+		final short[] cages = geometry.cagesOfCell[cell];
+		for (int i = 0; i < cages.length; i++) {
+			addPendingCage(cages[i]);
+		}
+		if ((left & (left - 1)) == 0 && !pending[cell]) {
+			// naked single or no candidate left
+			pending[cell] = true;
+			pendingCells[pendingCount++] = (short) cell;
+		}
+		return true;
+	}
+
+	/**
+	 * Queue a unit for the hidden singles check.
+	 *
+	 * @param unit
+	 *            the unit
+	 */
+	private void addPendingUnit(final int unit) {
+
+		if (!unitPending[unit]) {
+			unitPending[unit] = true;
+			pendingUnits[pendingUnitCount++] = (short) unit;
+		}
+	}
+
+	/**
+	 * Queue a cage for the sum check.
+	 *
+	 * @param cage
+	 *            the cage
+	 */
+	private void addPendingCage(final int cage) {
+
+		if (!cagePending[cage]) {
+			cagePending[cage] = true;
+			pendingCages[pendingCageCount++] = (short) cage;
+		}
+	}
+
+	/**
+	 * Place the naked and hidden singles of everything pending, then apply
+	 * locked candidates, until nothing changes any more.
+	 *
+	 * @return false if a cell has no candidate left or a digit has no place
+	 *         left in a unit
+	 */
+	public boolean propagate() {
+
+		do {
+			if (!propagateSingles()) {
+				return false;
+			}
+			if (emptyCount == 0) {
+				return true;
+			}
+			changed = false;
+			if (!applyLockedCandidates()) {
+				clearPending();
+				return false;
+			}
+		} while (changed);
+		return true;
+	}
+
+	/**
+	 * Place the naked and hidden singles of the pending cells and units, check
+	 * the sums of the pending cages, and do the same for everything changed by
+	 * this, until nothing is pending.
+	 *
+	 * @return false if a cell has no candidate left or a digit has no place
+	 *         left in a unit
+	 */
+	public boolean propagateSingles() {
+
+		while (pendingCount > 0 || pendingUnitCount > 0
+				|| pendingCageCount > 0) {
+
+			// naked singles
+			while (pendingCount > 0) {
+				final int cell = pendingCells[--pendingCount];
+				pending[cell] = false;
+				if (digits[cell] != 0) {
+					continue;
+				}
+				final int mask = candidates[cell];
+				if (mask == 0) {
+					clearPending();
+					return false;
+				}
+				if ((mask & (mask - 1)) == 0) {
+					place(cell, BoardGeometry.lowestDigit(mask));
+					nakedSingles++;
+				}
+			}
+
+			// hidden singles of one changed unit
+			if (pendingUnitCount > 0) {
+				final int unit = pendingUnits[--pendingUnitCount];
+				unitPending[unit] = false;
+				if (placeHiddenSingles(unit) < 0) {
+					clearPending();
+					return false;
+				}
+			}
+
+			// the sum of one changed cage, once the singles are done
+			if (pendingCount == 0 && pendingUnitCount == 0
+					&& pendingCageCount > 0) {
+				final int cage = pendingCages[--pendingCageCount];
+				cagePending[cage] = false;
+				if (!applyCageSum(cage)) {
+					clearPending();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reduce the candidates of a cage to the digits of the sets with its sum
+	 * which contain all placed digits and whose other digits are still
+	 * candidates of the empty cells.
+	 *
+	 * @param cage
+	 *            the cage
+	 * @return false if no set fits any more
+	 */
+	boolean applyCageSum(final int cage) {
+
+		final short[] cells = geometry.cages[cage];
+		int placed = 0;
+		int open = 0;
+		for (int i = 0; i < cells.length; i++) {
+			final int digit = digits[cells[i]];
+			if (digit != 0) {
+				placed |= 1 << (digit - 1);
+			} else {
+				open |= candidates[cells[i]];
+			}
+		}
+
+		int allowed = 0;
+		boolean fits = false;
+		final int[] combos = geometry.cageCombos[cage];
+		for (int i = 0; i < combos.length; i++) {
+			final int rest = combos[i] & ~placed;
+			if ((combos[i] & placed) == placed && (rest & ~open) == 0) {
+				allowed |= rest;
+				fits = true;
+			}
+		}
+		if (!fits) {
+			return false;
+		}
+
+		final int removed = open & ~allowed;
+		if (removed != 0) {
+			for (int i = 0; i < cells.length; i++) {
+				if (digits[cells[i]] == 0 && eliminate(cells[i], removed)) {
+					cageEliminations++;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Place the hidden singles of a unit, found with one fold of its
+	 * candidates into the digits seen at least once and more than once.
+	 *
+	 * @param unit
+	 *            the unit
+	 * @return number of placed digits or -1 if a digit has no place left in
+	 *         the unit
+	 */
+	int placeHiddenSingles(final int unit) {
+
+		final short[] cells = geometry.units[unit];
+
+		int once = 0;
+		int twice = 0;
+		for (int i = 0; i < cells.length; i++) {
+			final int mask = candidates[cells[i]];
+			twice |= once & mask;
+			once |= mask;
+		}
+		if ((once | used[unit]) != geometry.allDigits) {
+			return -1;
+		}
+
+		int singles = once & ~twice;
+		int placed = 0;
+		while (singles != 0) {
+			final int bit = singles & -singles;
+			singles &= singles - 1;
+			for (int i = 0; i < cells.length; i++) {
+				final int cell = cells[i];
+				if ((candidates[cell] & bit) != 0) {
+					// the cell is the single place of another digit too
+					if ((candidates[cell] & singles) != 0) {
+						return -1;
+					}
+					place(cell, BoardGeometry.lowestDigit(bit));
+					placed++;
+					hiddenSingles++;
+					break;
+				}
+			}
+		}
+		return placed;
+	}
+
+	/**
+	 * Locked candidates: if the places of a digit within unit A are all in
+	 * the intersection with unit B, the digit is removed from the rest of B.
+	 *
+	 * @return false if a cell has no candidate left
+	 */
+	private boolean applyLockedCandidates() {
+
+		final short[] lockedUnit = geometry.lockedUnit;
+		for (int pair = 0; pair < lockedUnit.length; pair++) {
+
+			int outside = 0;
+			final short[] outsideCells = geometry.lockedOutside[pair];
+			for (int i = 0; i < outsideCells.length; i++) {
+				outside |= candidates[outsideCells[i]];
+			}
+			final int locked = geometry.allDigits
+					& ~(outside | used[lockedUnit[pair]]);
+			if (locked == 0) {
+				continue;
+			}
+
+			final short[] targets = geometry.lockedTargets[pair];
+			for (int i = 0; i < targets.length; i++) {
+				final int cell = targets[i];
+				if (eliminate(cell, locked)) {
+					lockedEliminations++;
+					if (candidates[cell] == 0 && digits[cell] == 0) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Forget the pending cells and units, e.g. after a contradiction.
+	 */
+	private void clearPending() {
+
+		while (pendingCount > 0) {
+			pending[pendingCells[--pendingCount]] = false;
+		}
+		while (pendingUnitCount > 0) {
+			unitPending[pendingUnits[--pendingUnitCount]] = false;
+		}
+		while (pendingCageCount > 0) {
+			cagePending[pendingCages[--pendingCageCount]] = false;
+		}
+	}
+
+	/**
+	 * Get the current position on the trail to return to later.
+	 *
+	 * @return the trail mark
+	 */
+	public int mark() {
+		return trailSize;
+	}
+
+	/**
+	 * Take back all changes done since the mark was taken.
+	 *
+	 * @param mark
+	 *            the trail mark from {@link #mark()}
+	 */
+	public void undo(final int mark) {
+
+		while (trailSize > mark) {
+			trailSize--;
+			final int cell = trailCell[trailSize];
+			if (cell < 0) {
+				// placed digit
+				final int placed = ~cell;
+				final int bit = ~(1 << (digits[placed] - 1));
+				digits[placed] = 0;
+				final short[] units = geometry.unitsOfCell[placed];
+				for (int i = 0; i < units.length; i++) {
+					used[units[i]] &= bit;
+				}
+				emptyCount++;
+				candidates[placed] = trailMask[trailSize];
+			} else {
+				candidates[cell] = trailMask[trailSize];
+			}
+		}
+	}
+
+	/**
+	 * Select the empty cell with the fewest candidates.
+	 *
+	 * @return the cell or -1 if the board is full
+	 */
+	public int selectCell() {
+
+		int best = -1;
+		int bestCount = Integer.MAX_VALUE;
+		for (int cell = 0; cell < geometry.cells; cell++) {
+			if (digits[cell] == 0) {
+				final int count = BoardGeometry.count(candidates[cell]);
+				if (count < bestCount) {
+					best = cell;
+					bestCount = count;
+					if (count <= 2) {
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Get the candidates of a cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @return the candidate mask
+	 */
+	public int getCandidates(final int cell) {
+		return candidates[cell];
+	}
+
+	/**
+	 * Get the digit of a cell.
+	 *
+	 * @param cell
+	 *            the cell
+	 * @return the digit or 0 if empty
+	 */
+	public byte getDigit(final int cell) {
+		return digits[cell];
+	}
+
+	/**
+	 * Get the number of empty cells.
+	 *
+	 * @return number of empty cells
+	 */
+	public int getEmptyCount() {
+		return emptyCount;
+	}
+
+	/**
+	 * Copy the digits of all cells.
+	 *
+	 * @param target
+	 *            the array to fill, one digit per cell
+	 */
+	public void copyDigitsTo(final byte[] target) {
+		System.arraycopy(digits, 0, target, 0, geometry.cells);
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Random;
+
+/**
+ * Create puzzles with a unique solution for grids of any
+ * {@link BoardGeometry}, e.g. 16x16.
+ *
+ * A random full grid is found by the {@link GeneralSolver} with random guess
+ * order. Then the digits are hidden pairwise (point symmetric) in random order,
+ * as long as the puzzle keeps a unique solution and has more givens than
+ * wanted. The puzzle stays unique if no solution has another digit in the
+ * hidden cells, which is a much smaller search than counting solutions.
+ *
+ * @version $Id$
+ */
+public class GeneralGridCreator {
+
+	/** The shape of the grids. */
+	private final BoardGeometry geometry;
+
+	/** The solver to fill grids and to check for unique solutions. */
+	private final GeneralSolver solver;
+
+	/** Random functionality. */
+	private final Random random;
+
+	/** The token to stop the creation, may be null. */
+	private CancellationToken token;
+
+	/** Maximum number of nodes to check a hidden digit, 0 for no limit. */
+	private long checkNodeLimit;
+
+	/**
+	 * Create a creator.
+	 *
+	 * @param geometry
+	 *            the shape of the grids
+	 * @param random
+	 *            the random source
+	 */
+	public GeneralGridCreator(final BoardGeometry geometry, final Random random) {
+
+		this.geometry = geometry;
+		this.random = random;
+		this.solver = new GeneralSolver(geometry);
+	}
+
+	/**
+	 * Set the token to stop the creation.
+	 *
+	 * @param token
+	 *            the token, null to create without limit
+	 */
+	public void setCancellationToken(final CancellationToken token) {
+		this.token = token;
+		solver.setCancellationToken(token);
+	}
+
+	/**
+	 * Set the maximum number of nodes to check if a digit may be hidden. If
+	 * the check needs more, the digit stays given. Large grids need a limit,
+	 * some checks of a 25x25 grid take minutes.
+	 *
+	 * @param limit
+	 *            the number of nodes, 0 for no limit
+	 */
+	public void setCheckNodeLimit(final long limit) {
+		this.checkNodeLimit = limit;
+	}
+
+	/**
+	 * Create a random full grid.
+	 *
+	 * @return the digit of every cell or null if stopped by the token
+	 */
+	public byte[] createFullGrid() {
+
+		solver.setRandom(random);
+		solver.setNodeLimit(0);
+		try {
+			if (solver.countSolutions(new byte[geometry.cells], 1) != 1) {
+				return null;
+			}
+		} finally {
+			solver.setRandom(null);
+		}
+		final byte[] grid = new byte[geometry.cells];
+		System.arraycopy(solver.getSolution(), 0, grid, 0, geometry.cells);
+		return grid;
+	}
+
+	/**
+	 * Create a new puzzle with a unique solution.
+	 *
+	 * @param numberOfGivens
+	 *            the wanted number of given digits, the puzzle has more if no
+	 *            more digit can be hidden
+	 * @return the puzzle (0 = empty) or null if stopped by the token
+	 */
+	public byte[] createPuzzle(final int numberOfGivens) {
+
+		final byte[] full = createFullGrid();
+		return full == null ? null : hideDigits(full, numberOfGivens);
+	}
+
+	/**
+	 * Hide digits of a grid as long as the solution stays unique.
+	 *
+	 * @param puzzle
+	 *            a full grid or a puzzle with a unique solution, changed to
+	 *            the puzzle
+	 * @param numberOfGivens
+	 *            the wanted number of given digits
+	 * @return the puzzle or null if stopped by the token
+	 */
+	public byte[] hideDigits(final byte[] puzzle, final int numberOfGivens) {
+
+		final int cells = geometry.cells;
+		solver.setNodeLimit(checkNodeLimit);
+
+		// every cell once, in random order
+		final short[] order = new short[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			order[cell] = (short) cell;
+		}
+		for (int i = cells - 1; i > 0; i--) {
+			final int j = Math.abs(random.nextInt() % (i + 1));
+			final short swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+
+		int given = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			if (puzzle[cell] != 0) {
+				given++;
+			}
+		}
+
+		for (int i = 0; i < cells && given > numberOfGivens; i++) {
+			final int cell = order[i];
+			final int mirror = cells - 1 - cell;
+			final byte digit = puzzle[cell];
+			final byte mirrorDigit = puzzle[mirror];
+			if (digit == 0) {
+				continue;
+			}
+
+			puzzle[cell] = 0;
+			puzzle[mirror] = 0;
+			int other = solver.findOtherSolution(puzzle, cell, digit);
+			if (other == 0 && mirror != cell && mirrorDigit != 0) {
+				other = solver.findOtherSolution(puzzle, mirror, mirrorDigit);
+			}
+			if (other == 0) {
+				given -= mirror == cell || mirrorDigit == 0 ? 1 : 2;
+			} else if (token != null && token.isCancelled()) {
+				return null;
+			} else {
+				// not unique any more or too hard to check
+				puzzle[cell] = digit;
+				puzzle[mirror] = mirrorDigit;
+			}
+		}
+		return puzzle;
+	}
+}
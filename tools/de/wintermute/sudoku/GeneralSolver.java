@@ -0,0 +1,268 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.util.Random;
+
+/**
+ * Back-tracking solver for grids of any {@link BoardGeometry}.
+ *
+ * The search works like the one of the {@link GridSolver}: iterative on
+ * preallocated guess stacks, guessing on the cell with the fewest candidates
+ * and going back via the trail of the {@link GeneralCandidateBoard}. The
+ * board propagates singles and locked candidates after every guess.
+ *
+ * The solver only works on digit arrays, it doesn't know the {@link Grid} of
+ * the 9x9 game.
+ *
+ * @version $Id$
+ */
+public class GeneralSolver {
+
+	/** The board to search on. */
+	private final GeneralCandidateBoard board;
+
+	/** The cell guessed on each level of the search. */
+	private final short[] guessCell;
+
+	/** The candidates not yet tried on each level of the search. */
+	private final int[] guessesLeft;
+
+	/** The trail mark before the guess of each level of the search. */
+	private final int[] guessMark;
+
+	/** The first solution of the last search. */
+	private final byte[] solution;
+
+	/** The token to stop the search, may be null. */
+	private CancellationToken token;
+
+	/** Random order of the guessed digits, null to try the lowest first. */
+	private Random random;
+
+	/** Maximum number of nodes of one search, 0 for no limit. */
+	private long nodeLimit;
+
+	/** Nodes visited by the last search. */
+	private long nodes;
+
+	/**
+	 * Create a solver.
+	 *
+	 * @param geometry
+	 *            the shape of the grids to solve
+	 */
+	public GeneralSolver(final BoardGeometry geometry) {
+
+		board = new GeneralCandidateBoard(geometry);
+		guessCell = new short[geometry.cells];
+		guessesLeft = new int[geometry.cells];
+		guessMark = new int[geometry.cells];
+		solution = new byte[geometry.cells];
+	}
+
+	/**
+	 * Set the token to stop the search.
+	 *
+	 * @param token
+	 *            the token, null to search without limit
+	 */
+	public void setCancellationToken(final CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Try the digits of a guess in random order, e.g. to fill an empty grid
+	 * with a random solution.
+	 *
+	 * @param random
+	 *            the random source, null to try the lowest digit first
+	 */
+	public void setRandom(final Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Get the board of the solver.
+	 *
+	 * @return the board
+	 */
+	public GeneralCandidateBoard getBoard() {
+		return board;
+	}
+
+	/**
+	 * Set the maximum number of nodes of one search, e.g. to give up on
+	 * uniqueness checks which would take too long.
+	 *
+	 * @param limit
+	 *            the number of nodes, 0 for no limit
+	 */
+	public void setNodeLimit(final long limit) {
+		this.nodeLimit = limit;
+	}
+
+	/**
+	 * Count the solutions of a puzzle up to a limit. The first solution is
+	 * kept, see {@link #getSolution()}.
+	 *
+	 * @param givens
+	 *            the digit of every cell (0 = empty)
+	 * @param limit
+	 *            stop at this number of solutions, e.g. 2 to check for a
+	 *            unique solution
+	 * @return the number of solutions (at most limit) or -1 if the search was
+	 *         stopped by its token or node limit
+	 */
+	public int countSolutions(final byte[] givens, final int limit) {
+
+		nodes = 0;
+		if (!board.load(givens) || !board.propagate()) {
+			return 0;
+		}
+		return search(limit);
+	}
+
+	/**
+	 * Check if a puzzle has a solution with another digit in a cell. If the
+	 * puzzle was unique with the cell given, it is still unique without it
+	 * if there is no such solution. This search is much smaller than counting
+	 * to two solutions.
+	 *
+	 * @param givens
+	 *            the digit of every cell (0 = empty)
+	 * @param cell
+	 *            the cell
+	 * @param digit
+	 *            the digit (1..N) not to place in the cell
+	 * @return 1 if there is such a solution, 0 if not or -1 if the search was
+	 *         stopped by its token or node limit
+	 */
+	public int findOtherSolution(final byte[] givens, final int cell,
+			final int digit) {
+
+		nodes = 0;
+		if (!board.load(givens)) {
+			return 0;
+		}
+		board.eliminate(cell, 1 << (digit - 1));
+		if (!board.propagate()) {
+			board.undo(0);
+			return 0;
+		}
+		return search(1);
+	}
+
+	/**
+	 * Search the loaded and propagated board.
+	 *
+	 * @param limit
+	 *            stop at this number of solutions
+	 * @return the number of solutions (at most limit) or -1 if stopped
+	 */
+	private int search(final int limit) {
+
+		int found = 0;
+		int level = 0;
+		boolean descend = true;
+
+		while (true) {
+
+			if (descend) {
+				descend = false;
+
+				if ((token != null && !token.visitNode())
+						|| (nodeLimit > 0 && nodes >= nodeLimit)) {
+					board.undo(0);
+					return -1;
+				}
+				nodes++;
+
+				if (board.getEmptyCount() == 0) {
+					if (found == 0) {
+						board.copyDigitsTo(solution);
+					}
+					if (++found >= limit) {
+						break;
+					}
+				} else {
+					// open a new level for the next cell
+					final int nextCell = board.selectCell();
+					guessCell[level] = (short) nextCell;
+					guessesLeft[level] = board.getCandidates(nextCell);
+					guessMark[level] = board.mark();
+					level++;
+				}
+			}
+
+			if (level == 0) {
+				// all guesses tried
+				break;
+			}
+
+			// take back the last guess and everything following from it
+			final int top = level - 1;
+			board.undo(guessMark[top]);
+
+			final int guesses = guessesLeft[top];
+			if (guesses == 0) {
+				// back to the level before
+				level--;
+				continue;
+			}
+			final int bit = nextGuess(guesses);
+			guessesLeft[top] = guesses & ~bit;
+
+			// set the digit and go deeper if still solvable
+			board.place(guessCell[top], BoardGeometry.lowestDigit(bit));
+			descend = board.propagate();
+		}
+
+		board.undo(0);
+		return found;
+	}
+
+	/**
+	 * Choose the next digit to try.
+	 *
+	 * @param guesses
+	 *            the digits not yet tried, not 0
+	 * @return the bit of the chosen digit
+	 */
+	private int nextGuess(final int guesses) {
+
+		if (random == null) {
+			return guesses & -guesses;
+		}
+		int left = guesses;
+		for (int skip = Math.abs(random.nextInt() % BoardGeometry.count(guesses)); skip > 0; skip--) {
+			left &= left - 1;
+		}
+		return left & -left;
+	}
+
+	/**
+	 * Get the first solution of the last search.
+	 *
+	 * @return the digit of every cell, only valid if a solution was found
+	 */
+	public byte[] getSolution() {
+		return solution;
+	}
+
+	/**
+	 * Get the number of nodes visited by the last search.
+	 *
+	 * @return the nodes
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+}
@@ -0,0 +1,547 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * Benchmarks of the solvers and the creator (J2SE only, not part of the
+ * midlet).
+ *
+ * Every benchmark is run for a warmup time and then measured for a fixed
+ * time. The result is written as one CSV line per benchmark: name, parameter,
+ * number of operations, ns per operation, operations per second, bytes
+ * allocated per operation (-1 if the VM can't measure allocations) and search
+ * nodes per operation (-1 if not a solver benchmark), so runs can be compared
+ * over time.
+ *
+ * Usage: SolverBenchmark [-warmup ms] [-time ms] [-filter text] [out.csv]
+ *
+ * @version $Id$
+ */
+public class SolverBenchmark {
+
+	/** Easy puzzles. */
+	static final String[] EASY = {
+			"530070000600195000098000060800060003400803001700020006060000280000419005000080079",
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+			"200080300060070084030500209000105408000000000402706000301007040720040060004010003" };
+
+	/** Puzzles with the minimum of 17 givens. */
+	static final String[] SEVENTEEN = {
+			"000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+			"000000012000035000000600070700000300000400800100000000000120000080000040050000600",
+			"000000012003600000000007000410020000000500300700000600280000040000300500000000000",
+			"000000014000020000500000000010804000700000500000100000000050730004200000030000600",
+			"400000805030000000000700000020000060000080400000010000000603070500200000104000000",
+			"520006000000000701300000000000400800600000050000000000041800000000030020008700000",
+			"600000803040700000000000000000504070300200000106000000020000050000080600000010000",
+			"480300000000000071020000000705000060000200800000000000001076000300000400000050000" };
+
+	/** Some of the known hardest puzzles. */
+	static final String[] HARDEST = {
+			"800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+			"100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+			"000000012000000003002300400001800005060070800000009000008500000900040500470006000",
+			"000000039000001005003050800008090006070002000100400000009080050020000600400700000",
+			"100000002090400050006000700050903000000070000000850040700000600030009080002000001",
+			"850002400720000009004000000000107002305000900040000000000080070017000000000036040" };
+
+	/** Regions of the jigsaw benchmark: the blocks with some cells swapped. */
+	static final String JIGSAW_REGIONS = "000111222000111222001011222"
+			+ "333444555333444555334344555666777888666777888667677888";
+
+	/** Number of created puzzles per variant to solve. */
+	private static final int VARIANT_PUZZLES = 8;
+
+	/** Warmup time per benchmark in ms. */
+	private long warmupTime = 1000;
+
+	/** Measurement time per benchmark in ms. */
+	private long measureTime = 3000;
+
+	/** Only run benchmarks containing this text. */
+	private String filter = null;
+
+	/** The thread bean to measure allocations, null if not supported. */
+	private final com.sun.management.ThreadMXBean allocationBean;
+
+	/**
+	 * Create the benchmark runner.
+	 */
+	public SolverBenchmark() {
+
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean)
+						.isThreadAllocatedMemorySupported()) {
+			allocationBean = (com.sun.management.ThreadMXBean) bean;
+			allocationBean.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			allocationBean = null;
+		}
+	}
+
+	/**
+	 * Command line entry.
+	 *
+	 * @param args
+	 *            [-warmup ms] [-time ms] [-filter text] [out.csv]
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	public static void main(final String[] args) throws IOException {
+
+		final SolverBenchmark benchmark = new SolverBenchmark();
+		PrintStream out = System.out;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-warmup") && i + 1 < args.length) {
+				benchmark.warmupTime = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-time") && i + 1 < args.length) {
+				benchmark.measureTime = Long.parseLong(args[++i]);
+			} else if (args[i].equals("-filter") && i + 1 < args.length) {
+				benchmark.filter = args[++i];
+			} else {
+				out = new PrintStream(new FileOutputStream(args[i]));
+			}
+		}
+
+		benchmark.runAll(out);
+		out.flush();
+		if (out != System.out) {
+			out.close();
+		}
+	}
+
+	/**
+	 * Run all benchmarks.
+	 *
+	 * @param out
+	 *            receives the CSV lines
+	 */
+	public void runAll(final PrintStream out) {
+
+		out.println("benchmark,param,ops,ns_per_op,ops_per_sec,bytes_per_op,nodes_per_op");
+
+		final String[] corpusNames = { "easy", "17clue", "hardest" };
+		final String[][] corpora = { EASY, SEVENTEEN, HARDEST };
+
+		for (int c = 0; c < corpora.length; c++) {
+			final Grid[] puzzles = parseAll(corpora[c]);
+
+			run(out, "solve.grid", corpusNames[c], new Operation() {
+				private final GridSolver solver = new GridSolver(null);
+
+				void run(final int i) {
+					solver.searchSolutionsWithoutAnswer(puzzles[i
+							% puzzles.length]);
+				}
+
+				Solver getSolver() {
+					return solver;
+				}
+			});
+
+			run(out, "solve.logic", corpusNames[c], new Operation() {
+				private final GridSolver solver = new GridSolver(null);
+				{
+					solver.setStrategyEngine(new StrategyEngine());
+				}
+
+				void run(final int i) {
+					solver.searchSolutionsWithoutAnswer(puzzles[i
+							% puzzles.length]);
+				}
+
+				Solver getSolver() {
+					return solver;
+				}
+			});
+
+			run(out, "solve.dlx", corpusNames[c], new Operation() {
+				private final Solver solver = new DancingLinksSolver(null,
+						false);
+
+				void run(final int i) {
+					solver.searchSolutions(puzzles[i % puzzles.length]);
+				}
+
+				Solver getSolver() {
+					return solver;
+				}
+			});
+
+			// brute force needs seconds per 17 clue puzzle
+			if (corpora[c] != SEVENTEEN) {
+				run(out, "solve.brute", corpusNames[c], new Operation() {
+					private final Solver solver = new BruteForceSolver(null,
+							false);
+
+					void run(final int i) {
+						solver.searchSolutions(puzzles[i % puzzles.length]);
+					}
+
+					Solver getSolver() {
+						return solver;
+					}
+				});
+			}
+
+			// rating without and with remembered ratings
+			run(out, "rate", corpusNames[c], new Operation() {
+				void run(final int i) {
+					new DifficultyRater().rate(puzzles[i % puzzles.length]);
+				}
+			});
+
+			run(out, "rate.remembered", corpusNames[c], new Operation() {
+				private final DifficultyRater rater = new DifficultyRater();
+
+				void run(final int i) {
+					rater.rate(puzzles[i % puzzles.length]);
+				}
+			});
+
+			// uniqueness check as done during creation (answer known)
+			final Grid[] answered = withAnswers(puzzles);
+			run(out, "unique.grid", corpusNames[c], new Operation() {
+				private final GridSolver solver = new GridSolver(null);
+
+				void run(final int i) {
+					solver.checkForUniqueSolutionWithMixedStrategy(answered[i
+							% answered.length]);
+				}
+
+				Solver getSolver() {
+					return solver;
+				}
+			});
+		}
+
+		// one hard puzzle at a time, searched by several threads
+		final Grid[] hardest = parseAll(HARDEST);
+		final int[] threadCounts = { 1, 2, 4 };
+		for (int t = 0; t < threadCounts.length; t++) {
+			final int threads = threadCounts[t];
+			run(out, "solve.parallel", "hardest " + threads, new Operation() {
+				private final Solver solver = new ParallelSolver(null, 2,
+						threads);
+
+				void run(final int i) {
+					solver.searchSolutions(hardest[i % hardest.length]);
+				}
+
+				Solver getSolver() {
+					return solver;
+				}
+			});
+		}
+
+		final AbortableTask task = new AbortableTask() {
+		};
+		task.startRunning();
+		final GridCreator creator = new GridCreator(task);
+
+		run(out, "fullgrid", "-", new Operation() {
+			void run(final int i) {
+				creator.createShuffledBoard(GridCreator.EASY_GAME);
+			}
+		});
+
+		final GridFiller filler = new GridFiller(new Random(1));
+		final byte[] filled = new byte[CandidateBoard.CELLS];
+		run(out, "fullgrid.filler", "-", new Operation() {
+			void run(final int i) {
+				filler.fill(filled);
+			}
+		});
+
+		final GridTransformer transformer = new GridTransformer(new Random(1));
+		final byte[] transformed = new byte[CandidateBoard.CELLS];
+		filler.fill(filled);
+		run(out, "fullgrid.transform", "-", new Operation() {
+			void run(final int i) {
+				transformer.transform(filled, transformed);
+			}
+		});
+
+		final String[] levelNames = { "EASY", "NORMAL", "HARD" };
+		final short[] levels = { GridCreator.EASY_GAME,
+				GridCreator.NORMAL_GAME, GridCreator.HARD_GAME };
+		for (int l = 0; l < levels.length; l++) {
+			final short level = levels[l];
+			run(out, "create", levelNames[l], new Operation() {
+				void run(final int i) {
+					creator.createNewUniqueGame(level);
+				}
+			});
+		}
+
+		// the generic engine: 9x9 for comparison, then the large grids
+		final BoardGeometry classic = BoardGeometry.forBoxSize(3);
+		final byte[][] hardestCells = new byte[HARDEST.length][];
+		for (int i = 0; i < HARDEST.length; i++) {
+			hardestCells[i] = classic.parse(HARDEST[i]);
+		}
+		run(out, "solve.general", "hardest", new Operation() {
+			private final GeneralSolver solver = new GeneralSolver(classic);
+
+			void run(final int i) {
+				solver.countSolutions(hardestCells[i % hardestCells.length], 2);
+			}
+		});
+
+		// variants should not be slower than the classic rules: the same
+		// number of created puzzles of every variant, solved and created
+		final byte[] regions = new byte[classic.getCells()];
+		for (int i = 0; i < regions.length; i++) {
+			regions[i] = (byte) (JIGSAW_REGIONS.charAt(i) - '0');
+		}
+		final String[] variantNames = { "9x9", "9x9 diagonal", "9x9 jigsaw",
+				"9x9 killer" };
+		final BoardGeometry[] variants = { classic,
+				BoardGeometry.diagonal(3), BoardGeometry.jigsaw(3, regions),
+				createKiller(classic, new Random(2)) };
+		for (int v = 0; v < variants.length; v++) {
+			final BoardGeometry geometry = variants[v];
+			final GeneralGridCreator variantCreator = new GeneralGridCreator(
+					geometry, new Random(3));
+			final byte[][] variantPuzzles = new byte[VARIANT_PUZZLES][];
+			for (int i = 0; i < variantPuzzles.length; i++) {
+				variantPuzzles[i] = variantCreator.createPuzzle(0);
+			}
+
+			run(out, "solve.general", variantNames[v], new Operation() {
+				private final GeneralSolver solver = new GeneralSolver(geometry);
+
+				void run(final int i) {
+					solver.countSolutions(variantPuzzles[i
+							% variantPuzzles.length], 2);
+				}
+			});
+
+			// killer cages are taken from a full grid, a new puzzle for
+			// fixed cages would mostly measure the search for that grid
+			if (geometry.getCageCount() == 0) {
+				run(out, "create.general", variantNames[v], new Operation() {
+					void run(final int i) {
+						variantCreator.createPuzzle(0);
+					}
+				});
+			}
+		}
+
+		for (int k = 4; k <= BoardGeometry.MAX_BOX_SIZE; k++) {
+			final BoardGeometry geometry = BoardGeometry.forBoxSize(k);
+			final GeneralGridCreator generalCreator = new GeneralGridCreator(
+					geometry, new Random(k));
+			// some uniqueness checks of 25x25 grids take minutes
+			generalCreator.setCheckNodeLimit(1000);
+			final String size = geometry.getSize() + "x" + geometry.getSize();
+
+			run(out, "fullgrid.general", size, new Operation() {
+				void run(final int i) {
+					generalCreator.createFullGrid();
+				}
+			});
+
+			run(out, "create.general", size, new Operation() {
+				void run(final int i) {
+					generalCreator.createPuzzle(0);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Warm up and measure one benchmark.
+	 *
+	 * @param out
+	 *            receives the CSV line
+	 * @param name
+	 *            the benchmark name
+	 * @param param
+	 *            the parameter (corpus, level)
+	 * @param operation
+	 *            the operation to measure
+	 */
+	private void run(final PrintStream out, final String name,
+			final String param, final Operation operation) {
+
+		if (filter != null && (name + "," + param).indexOf(filter) < 0) {
+			return;
+		}
+
+		// warmup
+		int i = 0;
+		long end = System.currentTimeMillis() + warmupTime;
+		while (System.currentTimeMillis() < end) {
+			operation.run(i++);
+		}
+
+		// measure, counting the nodes of the solver searches
+		final Solver solver = operation.getSolver();
+		final NodeCounter counter = new NodeCounter();
+		if (solver != null) {
+			solver.setListener(counter);
+		}
+		final long startBytes = getAllocatedBytes();
+		final long start = System.nanoTime();
+		long ops = 0;
+		end = System.currentTimeMillis() + measureTime;
+		while (System.currentTimeMillis() < end) {
+			operation.run(i++);
+			ops++;
+		}
+		final long elapsed = System.nanoTime() - start;
+		final long bytes = getAllocatedBytes() - startBytes;
+		if (solver != null) {
+			solver.setListener(null);
+		}
+
+		out.println(name + "," + param + "," + ops + "," + (elapsed / ops)
+				+ "," + (ops * 1000000000L / Math.max(1, elapsed)) + ","
+				+ (startBytes < 0 ? -1 : bytes / ops) + ","
+				+ (solver == null ? -1 : counter.nodes / ops));
+		out.flush();
+	}
+
+	/**
+	 * Get the bytes allocated by the current thread so far.
+	 *
+	 * @return the bytes or -1 if not supported
+	 */
+	private long getAllocatedBytes() {
+
+		if (allocationBean == null) {
+			return -1;
+		}
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	/**
+	 * Create the geometry of a killer puzzle: every row of every block is a
+	 * cage, with the sums of a random full grid.
+	 *
+	 * @param classic
+	 *            the classic 9x9 geometry
+	 * @param random
+	 *            the random source of the full grid
+	 * @return the geometry with the cages
+	 */
+	private static BoardGeometry createKiller(final BoardGeometry classic,
+			final Random random) {
+
+		final byte[] full = new GeneralGridCreator(classic, random)
+				.createFullGrid();
+		final short[][] cages = new short[classic.getCells() / 3][3];
+		final int[] sums = new int[cages.length];
+		for (int cage = 0; cage < cages.length; cage++) {
+			for (int i = 0; i < 3; i++) {
+				cages[cage][i] = (short) (cage * 3 + i);
+				sums[cage] += full[cage * 3 + i];
+			}
+		}
+		return classic.withCages(cages, sums);
+	}
+
+	/**
+	 * Parse a corpus.
+	 *
+	 * @param lines
+	 *            the puzzles
+	 * @return the grids
+	 */
+	private static Grid[] parseAll(final String[] lines) {
+
+		final Grid[] grids = new Grid[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			grids[i] = BatchSolver.parse(lines[i]);
+		}
+		return grids;
+	}
+
+	/**
+	 * Copy the puzzles and store their solution as answer, like the creator
+	 * does before checking for uniqueness.
+	 *
+	 * @param puzzles
+	 *            the puzzles
+	 * @return the puzzles with answers
+	 */
+	private static Grid[] withAnswers(final Grid[] puzzles) {
+
+		final Grid[] answered = new Grid[puzzles.length];
+		final Solver solver = new DancingLinksSolver(null, true);
+		for (int i = 0; i < puzzles.length; i++) {
+			answered[i] = puzzles[i].clone();
+			final Vector solutions = solver.searchSolutions(puzzles[i]);
+			final Grid solution = (Grid) solutions.firstElement();
+			for (byte row = 0; row < 9; row++) {
+				for (byte col = 0; col < 9; col++) {
+					answered[i].getSlot(row, col).setAnswer(
+							solution.getSlot(row, col).getShown());
+				}
+			}
+		}
+		return answered;
+	}
+
+	/**
+	 * One benchmarked operation.
+	 */
+	private abstract static class Operation {
+
+		/**
+		 * Run the operation once.
+		 *
+		 * @param i
+		 *            the number of the call, to rotate through a corpus
+		 */
+		abstract void run(final int i);
+
+		/**
+		 * Get the solver of the operation, to count its nodes.
+		 *
+		 * @return the solver or null if the operation isn't a search
+		 */
+		Solver getSolver() {
+			return null;
+		}
+	}
+
+	/**
+	 * Sums up the nodes of all searches of a solver.
+	 */
+	private static class NodeCounter implements ISolverListener {
+
+		/** The nodes so far. */
+		private long nodes = 0;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see de.wintermute.sudoku.ISolverListener#searchFinished(de.wintermute.sudoku.Solver,
+		 *      de.wintermute.sudoku.SolverStatistics)
+		 */
+		public void searchFinished(final Solver solver,
+				final SolverStatistics statistics) {
+			nodes += statistics.getNodes();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ *******************************************************************************
+ * Java Tools for common purposes.
+ * see startofentry.de or wintermute.de
+ *
+ * Copyright (c) 2006 Ivonne Engemann and Marcus Wagner
+ *
+ * Enjoy.
+ ******************************************************************************/
+package de.wintermute.sudoku;
+
+/**
+ * Check that the solvers count the same number of solutions (J2SE only, not
+ * part of the midlet).
+ *
+ * The puzzles have no answers stored, like puzzles of the user or of a file:
+ * unique ones, ones with many solutions and ones without a solution. Every
+ * count of GridSolver, ParallelSolver and BruteForceSolver is compared with
+ * the count of DancingLinksSolver. Mismatches are reported on stderr and end
+ * the program with exit code 1.
+ *
+ * Usage: SolverCountCheck
+ *
+ * @version $Id$
+ */
+public class SolverCountCheck {
+
+	/** Puzzles with more than one solution. */
+	static final String[] LOOSE = {
+			"000000000000000000000000000000000000000000000000000000000000000000000000000000000",
+			"530070000600195000098000060800060003400803001700020006060000280000419005000080070",
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010000",
+			"000000010400000000020000000000050407008000300001090000300400200050100000000000000" };
+
+	/** Puzzles without a solution. */
+	static final String[] UNSOLVABLE = {
+			"550070000600195000098000060800060003400803001700020006060000280000419005000080079",
+			"123456780000000009000000000000000000000000000000000000000000000000000000000000000" };
+
+	/** The limits to count up to. */
+	private static final int[] LIMITS = { 1, 2, 10 };
+
+	/**
+	 * Command line entry.
+	 *
+	 * @param args
+	 *            none
+	 */
+	public static void main(final String[] args) {
+
+		final String[][] corpora = { SolverBenchmark.EASY,
+				SolverBenchmark.HARDEST, LOOSE, UNSOLVABLE };
+
+		final Solver reference = new DancingLinksSolver(null, false);
+		final Solver[] solvers = { new GridSolver(null),
+				new ParallelSolver(null, 2, 2),
+				new BruteForceSolver(null, false) };
+
+		int checks = 0;
+		int failures = 0;
+		for (int c = 0; c < corpora.length; c++) {
+			for (int p = 0; p < corpora[c].length; p++) {
+				final Grid puzzle = BatchSolver.parse(corpora[c][p]);
+				for (int l = 0; l < LIMITS.length; l++) {
+					final int expected = reference.countSolutions(puzzle,
+							LIMITS[l]);
+					for (int s = 0; s < solvers.length; s++) {
+						final int count = solvers[s].countSolutions(puzzle,
+								LIMITS[l]);
+						checks++;
+						if (count != expected) {
+							failures++;
+							System.err.println(getName(solvers[s]) + ": "
+									+ count + " instead of " + expected
+									+ " solutions (limit " + LIMITS[l]
+									+ ") for " + corpora[c][p]);
+						}
+					}
+				}
+			}
+		}
+
+		System.err.println(checks + " counts checked, " + failures
+				+ " mismatches");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Get the class name of a solver without the package.
+	 *
+	 * @param solver
+	 *            the solver
+	 * @return the name
+	 */
+	private static String getName(final Solver solver) {
+
+		final String name = solver.getClass().getName();
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+}